@@ -0,0 +1,299 @@
+package webserver;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Benchmark untuk jalur request HttpRequestHandler. Server dijalankan di port loopback dengan webroot sementara;
+// sebagian benchmark memanggil handler langsung dengan output di memori, sebagian lewat socket loopback.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestHandlerBenchmark {
+    private static final byte[] REQUEST_HEAD = ("GET /index.html?page=2&sort=size HTTP/1.1\r\n"
+            + "Host: localhost:8080\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64) Gecko/20100101 Firefox/120.0\r\n"
+            + "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n"
+            + "Accept-Language: en-US,en;q=0.5\r\n"
+            + "Accept-Encoding: gzip, deflate, br\r\n"
+            + "Connection: keep-alive\r\n"
+            + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    private static final File[] CONTENT_TYPE_FILES = {
+        new File("index.html"), new File("style.CSS"), new File("logo.png"), new File("archive.tar.gz"),
+        new File("README"), new File("photo.jpeg")
+    };
+    // Jumlah entri log per invocation logAccess, jauh di bawah kapasitas antrean log (65536)
+    private static final int LOG_BATCH = 1024;
+
+    private Path webRoot;
+    private Path logsDir;
+    private WebServer server;
+    private Thread serverThread;
+    private HttpRequestHandler handler;
+    private final HttpRequestParser parser = new HttpRequestParser();
+    private ResponseOutputStream memoryOut;
+    private Socket client;
+    private OutputStream clientOut;
+    private DataInputStream clientIn;
+    private final byte[] drainBuffer = new byte[64 * 1024];
+    private int contentTypeIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        webRoot = Files.createTempDirectory("earlybird-bench-root");
+        logsDir = Files.createTempDirectory("earlybird-bench-logs");
+        Random random = new Random(42);
+        byte[] small = new byte[1024];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = (byte) ('a' + random.nextInt(26));
+        }
+        Files.write(webRoot.resolve("index.html"), small);
+        byte[] large = new byte[8 * 1024 * 1024];
+        random.nextBytes(large);
+        Files.write(webRoot.resolve("large.bin"), large);
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        server = new WebServer(webRoot.toString(), logsDir.toString(), port);
+        // Koneksi loopback dipakai ulang selama satu trial penuh
+        server.setMaxKeepAliveRequests(Integer.MAX_VALUE);
+        server.setKeepAliveTimeout(600_000);
+        serverThread = new Thread(server::start, "benchmark-server");
+        serverThread.setDaemon(true);
+        serverThread.start();
+        client = connect(port);
+        clientOut = client.getOutputStream();
+        clientIn = new DataInputStream(new BufferedInputStream(client.getInputStream(), 64 * 1024));
+
+        handler = new HttpRequestHandler("127.0.0.1", server);
+        memoryOut = new ResponseOutputStream(OutputStream.nullOutputStream(), null);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        client.close();
+        server.stopServer();
+        serverThread.join(5000);
+        deleteRecursively(webRoot);
+        deleteRecursively(logsDir);
+    }
+
+    // Request line dan header dari request browser yang umum, diurai dari buffer yang dipakai ulang
+    @Benchmark
+    public void parseRequest(Blackhole blackhole) throws Exception {
+        parser.feed(REQUEST_HEAD, 0, REQUEST_HEAD.length);
+        if (!parser.parse()) {
+            throw new IllegalStateException("Request tidak lengkap");
+        }
+        blackhole.consume(parser.method());
+        blackhole.consume(parser.path());
+        blackhole.consume(parser.header("accept-encoding"));
+        blackhole.consume(parser.header("connection"));
+        parser.next();
+    }
+
+    @Benchmark
+    public String contentType() {
+        contentTypeIndex = (contentTypeIndex + 1) % CONTENT_TYPE_FILES.length;
+        return handler.getContentType(CONTENT_TYPE_FILES[contentTypeIndex]);
+    }
+
+    // File kecil dari StaticFileCache, ditulis ke output di memori
+    @Benchmark
+    public long serveSmallFileInMemory() throws IOException {
+        memoryOut.resetBytesWritten();
+        handler.serveFile("/index.html", memoryOut);
+        return memoryOut.bytesWritten();
+    }
+
+    // Request lengkap lewat socket loopback yang tetap keep-alive
+    @Benchmark
+    public int serveSmallFileLoopback() throws IOException {
+        return roundTrip("/index.html");
+    }
+
+    // File besar dikirim zero-copy oleh server, dibaca habis oleh klien
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int serveLargeFileLoopback() throws IOException {
+        return roundTrip("/large.bin");
+    }
+
+    // Direktori besar dan ukuran cache listing hanya dipakai listDirectory, jadi parameternya ada di state sendiri
+    // dan benchmark lain tidak ikut dijalankan sekali per nilai parameter. Server-nya tidak pernah dijalankan:
+    // host default cukup disiapkan dengan watcher dan penulis log yang tidak aktif.
+    @State(Scope.Benchmark)
+    public static class ListingState {
+        // 0 berarti setiap listing dibuat ulang, selain itu halaman diambil dari DirectoryListingCache
+        @Param({"0", "8388608"})
+        public long listingCacheBytes;
+
+        @Param({"10000"})
+        public int directoryEntries;
+
+        private Path webRoot;
+        private File directory;
+        private HttpRequestHandler handler;
+        private ResponseOutputStream memoryOut;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            webRoot = Files.createTempDirectory("earlybird-bench-listing");
+            Path listing = Files.createDirectory(webRoot.resolve("listing"));
+            for (int i = 0; i < directoryEntries; i++) {
+                Files.write(listing.resolve("file-" + i + ".txt"), new byte[i % 512]);
+            }
+            directory = listing.toFile();
+            WebServer server = new WebServer(webRoot.toString(), webRoot.resolve("logs").toString(), 0);
+            server.setListingCacheMaxBytes(listingCacheBytes);
+            server.getDefaultHost().start(new FileChangeWatcher(),
+                    new AccessLogDispatcher(1, AccessLogWriter.OverflowPolicy.DROP));
+            handler = new HttpRequestHandler("127.0.0.1", server);
+            memoryOut = new ResponseOutputStream(OutputStream.nullOutputStream(), null);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            deleteRecursively(webRoot);
+        }
+    }
+
+    @Benchmark
+    public long listDirectory(ListingState listing) throws IOException {
+        listing.memoryOut.resetBytesWritten();
+        listing.handler.listDirectory(listing.directory, listing.memoryOut, "/");
+        return listing.memoryOut.bytesWritten();
+    }
+
+    // Entri log yang dibuang selama satu iterasi. Jika tidak nol, antrean sempat penuh dan skor logAccess
+    // sebagian hanya mengukur offer yang gagal.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class LogCounters {
+        public long droppedLogEntries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            droppedLogEntries = 0;
+        }
+    }
+
+    // Satu invocation memasukkan LOG_BATCH entri lalu menunggu sampai thread penulis selesai memformat dan
+    // mem-flush semuanya ke file (atau membuangnya). Antrean yang sudah kosong belum cukup: dispatcher
+    // mengambil entri ke batch-nya sebelum menulisnya, jadi skornya adalah biaya per entri sampai ada di file.
+    @Benchmark
+    @OperationsPerInvocation(LOG_BATCH)
+    public void logAccess(LogCounters counters) {
+        AccessLogWriter accessLog = server.getAccessLog();
+        long droppedBefore = accessLog.getDroppedCount();
+        long target = accessLog.getWrittenCount() + droppedBefore + LOG_BATCH;
+        for (int i = 0; i < LOG_BATCH; i++) {
+            handler.logAccess("/index.html", "127.0.0.1", "/index.html");
+        }
+        while (accessLog.getWrittenCount() + accessLog.getDroppedCount() < target) {
+            Thread.onSpinWait();
+        }
+        counters.droppedLogEntries += accessLog.getDroppedCount() - droppedBefore;
+    }
+
+    // Mengirim satu GET dan membaca seluruh responsnya sesuai Content-Length
+    private int roundTrip(String path) throws IOException {
+        clientOut.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        clientOut.flush();
+        long contentLength = -1;
+        String line;
+        while (!(line = readLine(clientIn)).isEmpty()) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Long.parseLong(line.substring(15).trim());
+            }
+        }
+        if (contentLength < 0) {
+            throw new IOException("Respons tanpa Content-Length untuk " + path);
+        }
+        long remaining = contentLength;
+        while (remaining > 0) {
+            int n = clientIn.read(drainBuffer, 0, (int) Math.min(drainBuffer.length, remaining));
+            if (n < 0) {
+                throw new IOException("Koneksi ditutup sebelum respons selesai");
+            }
+            remaining -= n;
+        }
+        return (int) contentLength;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                throw new IOException("Koneksi ditutup saat membaca header");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    // Menunggu sampai server selesai start dan menerima koneksi
+    private Socket connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            if (server.getAccessLog() != null) {
+                try {
+                    Socket socket = new Socket();
+                    socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                } catch (IOException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                }
+            } else if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Server tidak start dalam 10 detik");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
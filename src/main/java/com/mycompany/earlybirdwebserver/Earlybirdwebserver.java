@@ -1,10 +1,27 @@
 package com.mycompany.earlybirdwebserver;
 
+import java.util.Arrays;
+import webserver.AccessLogQuery;
+import webserver.HeadlessServer;
+import webserver.LoadGenerator;
 import webserver.WebServerUI;
 
 public class Earlybirdwebserver {
     public static void main(String[] args) {
+        // Mode headless tidak memuat kelas JavaFX sama sekali
+        if (Arrays.asList(args).contains("--query-logs")) {
+            AccessLogQuery.main(args);
+        } else if (Arrays.asList(args).contains("--load-test")) {
+            LoadGenerator.main(args);
+        } else if (Arrays.asList(args).contains("--headless")) {
+            HeadlessServer.main(args);
+        } else {
+            launchUI(args);
+        }
+    }
+
+    // Dipisah ke metode sendiri agar WebServerUI (dan JavaFX) hanya dimuat jika GUI benar-benar dijalankan
+    private static void launchUI(String[] args) {
         WebServerUI.launch(WebServerUI.class, args);
-        
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package webserver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Satu antrean dan satu thread penulis untuk log akses semua virtual host. Setiap entri membawa AccessLogWriter
+// tujuannya, sehingga menambah host hanya berarti satu pasang file log lagi, bukan thread dan antrean baru.
+public class AccessLogDispatcher {
+    private static final int BATCH_SIZE = 512;
+
+    private final BlockingQueue<AccessLogWriter.Entry> queue;
+    private final AccessLogWriter.OverflowPolicy overflowPolicy;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public AccessLogDispatcher(int queueCapacity, AccessLogWriter.OverflowPolicy overflowPolicy) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "access-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Menghentikan penulis setelah semua entri di antrean ditulis; semua file yang masih terbuka ditutup
+    public void close() {
+        // Tidak memakai interrupt karena bisa menutup FileChannel yang sedang ditulis
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Jumlah entri semua host yang masih menunggu ditulis
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    // Dipanggil dari thread request; false jika entri tidak masuk antrean dan harus dihitung sebagai dibuang
+    boolean enqueue(AccessLogWriter.Entry entry) {
+        if (overflowPolicy == AccessLogWriter.OverflowPolicy.BLOCK && running) {
+            try {
+                queue.put(entry);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return queue.offer(entry);
+    }
+
+    // Penanda tutup untuk satu host selalu ditunggu masuk antrean: entri host itu yang sudah diterima ditulis
+    // lebih dulu, baru file-nya ditutup di thread penulis
+    void enqueueClose(AccessLogWriter.Entry marker) {
+        try {
+            while (running && !queue.offer(marker, 100, TimeUnit.MILLISECONDS)) {
+                // Antrean penuh, tunggu thread penulis
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        List<AccessLogWriter.Entry> batch = new ArrayList<>(BATCH_SIZE);
+        Set<AccessLogWriter> touched = new LinkedHashSet<>();
+        Set<AccessLogWriter> open = new LinkedHashSet<>();
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    AccessLogWriter.Entry first = queue.poll(250, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                queue.drainTo(batch, BATCH_SIZE - batch.size());
+                for (AccessLogWriter.Entry entry : batch) {
+                    AccessLogWriter writer = entry.writer;
+                    if (entry.isCloseMarker()) {
+                        writer.closeFiles();
+                        touched.remove(writer);
+                        open.remove(writer);
+                    } else if (writer.write(entry)) {
+                        touched.add(writer);
+                        open.add(writer);
+                    }
+                }
+                // Flush sekali per host untuk seluruh batch
+                for (AccessLogWriter writer : touched) {
+                    writer.flush();
+                }
+                touched.clear();
+                batch.clear();
+            }
+        } finally {
+            for (AccessLogWriter writer : open) {
+                writer.closeFiles();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+// Query log akses biner dari command line, misalnya:
+// java -cp ... webserver.AccessLogQuery --logs ./logs --from "2026-10-13 14:00" --to "2026-10-13 14:05" --status 5xx
+public class AccessLogQuery {
+    public static void main(String[] args) {
+        String logsPath = "./logs";
+        Long from = null;
+        Long to = null;
+        StringBuilder filter = new StringBuilder();
+        long limit = Long.MAX_VALUE;
+        boolean countOnly = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--query-logs")) {
+                    continue;
+                }
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    printUsage(System.out);
+                    return;
+                }
+                if (arg.equals("--count")) {
+                    countOnly = true;
+                    continue;
+                }
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Argumen tidak dikenal: " + arg);
+                }
+                String name = arg.substring(2);
+                String value;
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                } else if (i + 1 < args.length) {
+                    value = args[++i];
+                } else {
+                    throw new IllegalArgumentException("Nilai untuk --" + name + " belum diisi");
+                }
+                switch (name) {
+                    case "logs":
+                        logsPath = value;
+                        break;
+                    case "from":
+                        from = AccessLogStore.parseTime(value);
+                        break;
+                    case "to":
+                        to = AccessLogStore.parseTime(value);
+                        break;
+                    case "filter":
+                        filter.append(' ').append(value);
+                        break;
+                    case "status":
+                    case "ip":
+                    case "path":
+                    case "min-ms":
+                        filter.append(' ').append(name).append('=').append(value);
+                        break;
+                    case "limit":
+                        limit = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opsi tidak dikenal: --" + name);
+                }
+            }
+            // Tanpa --from dan --to yang dicari adalah hari ini sampai sekarang
+            if (from == null) {
+                from = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            if (to == null) {
+                to = System.currentTimeMillis() + 1;
+            }
+            Predicate<AccessLogRecord> predicate = AccessLogStore.parseFilter(filter.toString());
+            long matched = run(new AccessLogStore(logsPath), from, to, predicate, limit, countOnly, System.out);
+            if (countOnly) {
+                System.out.println(matched);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Mencetak record yang cocok satu per baris selagi dibaca; hasilnya jumlah record yang cocok
+    static long run(AccessLogStore store, long from, long to, Predicate<AccessLogRecord> filter, long limit,
+                    boolean countOnly, PrintStream out) throws IOException {
+        long matched = 0;
+        try (Stream<AccessLogRecord> records = store.query(from, to, filter)) {
+            Iterator<AccessLogRecord> iterator = records.iterator();
+            while (matched < limit && iterator.hasNext()) {
+                AccessLogRecord record = iterator.next();
+                if (!countOnly) {
+                    out.println(record);
+                }
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp ... webserver.AccessLogQuery [options]");
+        out.println("       java -jar earlybirdwebserver.jar --query-logs [options]");
+        out.println();
+        out.println("  --logs DIR                access log directory (default ./logs; LOGS/NAME for a virtual host)");
+        out.println("  --from TIME, --to TIME    range [from, to): yyyy-MM-dd, \"yyyy-MM-dd HH:mm[:ss]\" or epoch millis");
+        out.println("                            (default: today up to now)");
+        out.println("  --status 404|5xx          exact status or status class");
+        out.println("  --ip ADDRESS              client address");
+        out.println("  --path PREFIX             request path prefix");
+        out.println("  --min-ms N                only requests that took at least N milliseconds");
+        out.println("  --filter \"K=V ...\"        the same filters in one string, as in the UI");
+        out.println("  --limit N                 stop after N records");
+        out.println("  --count                   print only the number of matching records");
+    }
+}
@@ -0,0 +1,54 @@
+package webserver;
+
+import java.util.Date;
+
+// Satu request di log akses biner: kapan, dari mana, path apa, dan bagaimana hasilnya
+public final class AccessLogRecord {
+    private final long timestamp; // milidetik sejak epoch
+    private final String clientAddress;
+    private final String path;
+    private final int status;
+    private final long bytes; // byte respons yang terkirim
+    private final long latencyMicros;
+
+    public AccessLogRecord(long timestamp, String clientAddress, String path, int status, long bytes,
+                           long latencyMicros) {
+        this.timestamp = timestamp;
+        this.clientAddress = clientAddress;
+        this.path = path;
+        this.status = status;
+        this.bytes = bytes;
+        this.latencyMicros = latencyMicros;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getClientAddress() {
+        return clientAddress;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    // Satu baris seperti log teks, ditambah status, ukuran, dan latensi
+    @Override
+    public String toString() {
+        return String.format("[%s] %s - %s %d %d %.3fms", new Date(timestamp), clientAddress, path, status, bytes,
+                latencyMicros / 1000.0);
+    }
+}
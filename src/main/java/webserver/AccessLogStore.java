@@ -0,0 +1,461 @@
+package webserver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Log akses biner yang hanya ditambah di ujungnya, satu segmen per hari di samping file .log teks.
+// Setiap segmen (yyyy-MM-dd.alog) punya indeks waktu jarang (yyyy-MM-dd.alog.idx) berisi waktu dan offset
+// record kira-kira setiap 64 KB, sehingga query rentang waktu langsung melompat ke dekat awal rentangnya
+// lalu membaca record secara berurutan tanpa memuat seluruh file.
+//
+// Record: timestamp (long), status (short), byte terkirim (long), latensi mikrodetik (int),
+// alamat klien (panjang byte + UTF-8), path (panjang short + UTF-8). Entri indeks: timestamp dan offset (long).
+public class AccessLogStore {
+    static final String SEGMENT_SUFFIX = ".alog";
+    static final String INDEX_SUFFIX = ".alog.idx";
+    private static final int SEGMENT_MAGIC = 0x45424c47; // "EBLG"
+    private static final int INDEX_MAGIC = 0x45424c49; // "EBLI"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 5; // magic dan versi
+    private static final int INDEX_ENTRY_SIZE = 16;
+    private static final int INDEX_INTERVAL = 64 * 1024; // byte record di antara dua entri indeks
+    // Record ditulis sesuai urutan antrean, bukan persis urutan timestamp-nya; selisihnya jauh di bawah ini.
+    // Karena itu juga record beberapa saat sebelum tengah malam boleh berada di segmen hari berikutnya.
+    static final long ORDER_SLACK_MILLIS = 1000;
+    private static final int MAX_ADDRESS_BYTES = 255;
+    private static final int MAX_PATH_CHARS = 4096; // 4096 karakter UTF-8 selalu muat di panjang short
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final Path logsDir;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public AccessLogStore(String logsPath) {
+        this.logsDir = Paths.get(logsPath);
+    }
+
+    // Record dengan timestamp di [from, to) yang cocok dengan filter, dibaca bertahap dari segmen yang
+    // mencakup rentang itu. Stream-nya harus ditutup (try-with-resources) agar file yang terbuka dilepas.
+    public Stream<AccessLogRecord> query(long from, long to, Predicate<AccessLogRecord> filter) throws IOException {
+        QueryIterator iterator = new QueryIterator(segmentsBetween(from, to), from, to, filter);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(iterator::close);
+    }
+
+    // Segmen harian yang mungkin berisi record di rentang ini, urut dari yang paling lama
+    List<Path> segmentsBetween(long from, long to) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(logsDir)) {
+            return segments;
+        }
+        LocalDate first = dayOf(saturatedAdd(from, -ORDER_SLACK_MILLIS));
+        LocalDate last = dayOf(saturatedAdd(to, ORDER_SLACK_MILLIS));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(logsDir, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    LocalDate day = LocalDate.parse(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    if (!day.isBefore(first) && !day.isAfter(last)) {
+                        segments.add(file);
+                    }
+                } catch (DateTimeParseException e) {
+                    // Bukan segmen harian
+                }
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private LocalDate dayOf(long millis) {
+        if (millis <= 0) {
+            return LocalDate.EPOCH;
+        }
+        // Batas atas yang tidak terhingga dipotong ke tahun yang masih bisa dihitung LocalDate
+        return LocalDate.ofInstant(Instant.ofEpochMilli(Math.min(millis, 253402300799999L)), zone);
+    }
+
+    private static long saturatedAdd(long value, long delta) {
+        long result = value + delta;
+        if (delta > 0 && result < value) {
+            return Long.MAX_VALUE;
+        }
+        if (delta < 0 && result > value) {
+            return Long.MIN_VALUE;
+        }
+        return result;
+    }
+
+    // Filter dari teks seperti "status=5xx ip=10.0.0.7 path=/img min-ms=100"; dipakai bersama oleh CLI dan UI
+    public static Predicate<AccessLogRecord> parseFilter(String spec) {
+        Predicate<AccessLogRecord> filter = record -> true;
+        if (spec == null || spec.isBlank()) {
+            return filter;
+        }
+        for (String token : spec.trim().split("\\s+")) {
+            int equals = token.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("Filter tidak valid: " + token);
+            }
+            String key = token.substring(0, equals);
+            String value = token.substring(equals + 1);
+            switch (key) {
+                case "status":
+                    filter = filter.and(statusFilter(value));
+                    break;
+                case "ip":
+                    filter = filter.and(record -> record.getClientAddress().equals(value));
+                    break;
+                case "path":
+                    filter = filter.and(record -> record.getPath().startsWith(value));
+                    break;
+                case "min-ms":
+                    long minMicros = parseLong(key, value) * 1000;
+                    filter = filter.and(record -> record.getLatencyMicros() >= minMicros);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Filter tidak dikenal: " + key);
+            }
+        }
+        return filter;
+    }
+
+    // Status persis seperti 404, atau satu kelas seperti 5xx
+    private static Predicate<AccessLogRecord> statusFilter(String value) {
+        if (value.length() == 3 && value.substring(1).equalsIgnoreCase("xx")) {
+            int statusClass = (int) parseLong("status", value.substring(0, 1));
+            return record -> record.getStatus() / 100 == statusClass;
+        }
+        int status = (int) parseLong("status", value);
+        return record -> record.getStatus() == status;
+    }
+
+    private static long parseLong(String key, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+        }
+    }
+
+    // Waktu untuk query: yyyy-MM-dd, yyyy-MM-dd HH:mm[:ss] (spasi atau T), atau milidetik sejak epoch
+    public static long parseTime(String text) {
+        String value = text.trim();
+        try {
+            if (value.matches("\\d{11,}")) {
+                return Long.parseLong(value);
+            }
+            ZoneId zone = ZoneId.systemDefault();
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(zone).toInstant().toEpochMilli();
+            }
+            return LocalDateTime.parse(value.replace(' ', 'T')).atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Waktu tidak valid: " + text);
+        }
+    }
+
+    // Offset mulai baca: entri indeks terakhir yang waktunya sebelum target. Indeks dicari dengan
+    // binary search langsung di file sehingga tidak perlu dimuat seluruhnya.
+    static long startOffset(Path index, long target) throws IOException {
+        if (!Files.exists(index)) {
+            return HEADER_SIZE;
+        }
+        try (FileChannel channel = FileChannel.open(index, StandardOpenOption.READ)) {
+            long entries = (channel.size() - HEADER_SIZE) / INDEX_ENTRY_SIZE;
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            long low = 0;
+            long high = entries - 1;
+            long offset = HEADER_SIZE;
+            while (low <= high) {
+                long middle = (low + high) >>> 1;
+                entry.clear();
+                readFully(channel, entry, HEADER_SIZE + middle * INDEX_ENTRY_SIZE);
+                if (entry.getLong(0) < target) {
+                    offset = entry.getLong(8);
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return offset;
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    // Membaca satu record; null jika file habis, termasuk record terakhir yang baru sebagian tertulis
+    static AccessLogRecord readRecord(DataInputStream in) throws IOException {
+        try {
+            long timestamp = in.readLong();
+            int status = in.readUnsignedShort();
+            long bytes = in.readLong();
+            long latencyMicros = in.readInt() & 0xffffffffL;
+            byte[] address = new byte[in.readUnsignedByte()];
+            in.readFully(address);
+            byte[] path = new byte[in.readUnsignedShort()];
+            in.readFully(path);
+            return new AccessLogRecord(timestamp, new String(address, StandardCharsets.UTF_8),
+                    new String(path, StandardCharsets.UTF_8), status, bytes, latencyMicros);
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // Melewati satu record tanpa membuat string-nya; hasilnya ukuran record, atau -1 jika file habis
+    private static long skipRecord(DataInputStream in) throws IOException {
+        try {
+            in.skipNBytes(8 + 2 + 8 + 4);
+            int addressLength = in.readUnsignedByte();
+            in.skipNBytes(addressLength);
+            int pathLength = in.readUnsignedShort();
+            in.skipNBytes(pathLength);
+            return recordSize(addressLength, pathLength);
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    private static int recordSize(int addressLength, int pathLength) {
+        return 8 + 2 + 8 + 4 + 1 + addressLength + 2 + pathLength;
+    }
+
+    static Path indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    private static DataInputStream openAt(FileChannel channel, long offset) throws IOException {
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), READ_BUFFER_SIZE));
+    }
+
+    private static void checkMagic(FileChannel channel, int magic, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != magic || header.get(4) != VERSION) {
+            throw new IOException("Bukan file log biner yang dikenal: " + file);
+        }
+    }
+
+    // Membaca segmen satu per satu dan hanya mengembalikan record yang cocok
+    private static final class QueryIterator implements Iterator<AccessLogRecord>, Closeable {
+        private final List<Path> segments;
+        private final long from;
+        private final long to;
+        private final long stopAt; // record setelah ini pasti di luar rentang karena selisih urutan sudah lewat
+        private final Predicate<AccessLogRecord> filter;
+        private int nextSegment;
+        private FileChannel channel;
+        private DataInputStream in;
+        private AccessLogRecord next;
+
+        QueryIterator(List<Path> segments, long from, long to, Predicate<AccessLogRecord> filter) {
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.stopAt = saturatedAdd(to, ORDER_SLACK_MILLIS);
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == null) {
+                    if (in == null && !openNextSegment()) {
+                        return false;
+                    }
+                    AccessLogRecord record = readRecord(in);
+                    if (record == null || record.getTimestamp() >= stopAt) {
+                        close();
+                        continue;
+                    }
+                    if (record.getTimestamp() >= from && record.getTimestamp() < to && filter.test(record)) {
+                        next = record;
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public AccessLogRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AccessLogRecord record = next;
+            next = null;
+            return record;
+        }
+
+        private boolean openNextSegment() throws IOException {
+            if (nextSegment >= segments.size()) {
+                return false;
+            }
+            Path segment = segments.get(nextSegment++);
+            long offset = startOffset(indexOf(segment), saturatedAdd(from, -ORDER_SLACK_MILLIS));
+            channel = FileChannel.open(segment, StandardOpenOption.READ);
+            checkMagic(channel, SEGMENT_MAGIC, segment);
+            in = openAt(channel, offset);
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            channel = null;
+            in = null;
+        }
+    }
+
+    // Penulis satu segmen harian beserta indeksnya; hanya dipakai thread penulis AccessLogWriter
+    static final class SegmentWriter implements Closeable {
+        private final DataOutputStream data;
+        private final DataOutputStream index;
+        private long position; // offset record berikutnya di segmen
+        private long nextIndexAt; // record pertama di atau setelah offset ini dicatat di indeks
+
+        SegmentWriter(Path segment) throws IOException {
+            Path indexFile = indexOf(segment);
+            position = recover(segment, indexFile);
+            nextIndexAt = position; // record pertama setelah dibuka selalu diindeks
+            data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), READ_BUFFER_SIZE));
+            index = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        }
+
+        void append(long timestamp, String clientAddress, String path, int status, long bytes, long latencyMicros)
+                throws IOException {
+            byte[] addressBytes = truncate(clientAddress.getBytes(StandardCharsets.UTF_8), MAX_ADDRESS_BYTES);
+            String shortPath = path.length() > MAX_PATH_CHARS ? path.substring(0, MAX_PATH_CHARS) : path;
+            byte[] pathBytes = shortPath.getBytes(StandardCharsets.UTF_8);
+            if (position >= nextIndexAt) {
+                index.writeLong(timestamp);
+                index.writeLong(position);
+                nextIndexAt = position + INDEX_INTERVAL;
+            }
+            data.writeLong(timestamp);
+            data.writeShort(Math.min(Math.max(status, 0), 0xffff));
+            data.writeLong(bytes);
+            data.writeInt((int) Math.min(Math.max(latencyMicros, 0), 0xffffffffL));
+            data.writeByte(addressBytes.length);
+            data.write(addressBytes);
+            data.writeShort(pathBytes.length);
+            data.write(pathBytes);
+            position += recordSize(addressBytes.length, pathBytes.length);
+        }
+
+        // Data lebih dulu, sehingga entri indeks tidak pernah menunjuk ke record yang belum ada di disk
+        void flush() throws IOException {
+            data.flush();
+            index.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                data.close();
+                index.close();
+            }
+        }
+
+        private static byte[] truncate(byte[] bytes, int max) {
+            if (bytes.length <= max) {
+                return bytes;
+            }
+            byte[] truncated = new byte[max];
+            System.arraycopy(bytes, 0, truncated, 0, max);
+            return truncated;
+        }
+
+        // Menyiapkan segmen untuk ditambah: header ditulis untuk file baru, dan record terakhir yang hanya
+        // tertulis sebagian (server mati di tengah flush) dipotong. Hasilnya panjang data yang valid.
+        private static long recover(Path segment, Path index) throws IOException {
+            Files.createDirectories(segment.getParent());
+            long validLength;
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_SIZE) {
+                    channel.truncate(0);
+                    channel.write(header(SEGMENT_MAGIC), 0);
+                    validLength = HEADER_SIZE;
+                } else {
+                    checkMagic(channel, SEGMENT_MAGIC, segment);
+                    // Record setelah entri indeks terakhir dibaca ulang untuk menemukan akhir record utuh
+                    validLength = startOffset(index, Long.MAX_VALUE);
+                    DataInputStream in = openAt(channel, validLength);
+                    long size;
+                    while ((size = skipRecord(in)) > 0) {
+                        validLength += size;
+                    }
+                    channel.truncate(validLength);
+                }
+            }
+            try (FileChannel channel = FileChannel.open(index, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                if (channel.size() < HEADER_SIZE) {
+                    channel.truncate(0);
+                    channel.write(header(INDEX_MAGIC), 0);
+                } else {
+                    checkMagic(channel, INDEX_MAGIC, index);
+                    long entries = (channel.size() - HEADER_SIZE) / INDEX_ENTRY_SIZE;
+                    channel.truncate(HEADER_SIZE + entries * INDEX_ENTRY_SIZE); // entri terakhir yang terpotong
+                }
+            }
+            return validLength;
+        }
+
+        private static ByteBuffer header(int magic) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(magic).put((byte) VERSION).flip();
+            return header;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package webserver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+
+// Log akses satu host di luar jalur request: handler hanya memasukkan entri ke antrean AccessLogDispatcher yang
+// dipakai bersama semua host, lalu thread penulisnya menulis entri per batch ke file harian host ini yang tetap
+// terbuka. Entri yang membawa status respons juga ditulis ke segmen biner harian (AccessLogStore) yang bisa
+// di-query per rentang waktu.
+public class AccessLogWriter {
+    // Apa yang dilakukan saat antrean penuh
+    public enum OverflowPolicy {
+        DROP, // entri dibuang dan dihitung, request tidak pernah menunggu
+        BLOCK // thread request menunggu sampai ada tempat di antrean
+    }
+
+    // Satu entri log untuk host tertentu; diformat di thread penulis, bukan di thread request
+    static final class Entry {
+        final AccessLogWriter writer;
+        final long timestamp;
+        final String ipAddress;
+        final String requestURL;
+        final String message;
+        final int status; // 0 untuk catatan tambahan yang hanya masuk log teks
+        final long bytes;
+        final long latencyMicros;
+        private final boolean closeMarker; // bukan entri log: file host ini ditutup setelah entri sebelumnya
+
+        Entry(AccessLogWriter writer, long timestamp, String ipAddress, String requestURL, String message, int status,
+              long bytes, long latencyMicros, boolean closeMarker) {
+            this.writer = writer;
+            this.timestamp = timestamp;
+            this.ipAddress = ipAddress;
+            this.requestURL = requestURL;
+            this.message = message;
+            this.status = status;
+            this.bytes = bytes;
+            this.latencyMicros = latencyMicros;
+            this.closeMarker = closeMarker;
+        }
+
+        boolean isCloseMarker() {
+            return closeMarker;
+        }
+    }
+
+    private final Path logsDir;
+    private final AccessLogDispatcher dispatcher;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final ZoneId zone = ZoneId.systemDefault();
+    private volatile boolean closed;
+
+    // Hanya disentuh thread penulis dispatcher: file harian yang sedang terbuka dan rentang waktunya
+    private BufferedWriter currentWriter;
+    private AccessLogStore.SegmentWriter currentSegment;
+    private long currentDayStart = Long.MAX_VALUE;
+    private long nextDayStart = Long.MIN_VALUE;
+    private boolean finished; // file sudah ditutup untuk terakhir kali
+    private int unflushed; // entri yang sudah masuk buffer file tetapi belum di-flush
+
+    public AccessLogWriter(String logsPath, AccessLogDispatcher dispatcher) {
+        this.logsDir = Paths.get(logsPath);
+        this.dispatcher = dispatcher;
+    }
+
+    // Entri yang sudah diterima tetap ditulis, file-nya ditutup sesudahnya oleh thread penulis. Request yang masih
+    // berjalan dan mencatat setelah ini tidak menulis apa-apa lagi; entrinya dihitung sebagai dibuang.
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.enqueueClose(new Entry(this, 0, null, null, null, 0, 0, 0, true));
+    }
+
+    // Dipanggil dari thread request, tidak menyentuh disk sama sekali
+    public void log(String ipAddress, String requestURL, String message) {
+        log(ipAddress, requestURL, message, 0, 0, 0);
+    }
+
+    // Satu request yang selesai dijawab; selain baris teks juga menjadi record di log biner
+    public void log(String ipAddress, String requestURL, String message, int status, long bytes, long latencyMicros) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        Entry entry = new Entry(this, System.currentTimeMillis(), ipAddress, requestURL, message, status, bytes,
+                latencyMicros, false);
+        if (!dispatcher.enqueue(entry)) {
+            dropped.increment();
+        }
+    }
+
+    // Jumlah entri host ini yang dibuang karena antrean penuh atau karena log-nya sudah ditutup
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    // Jumlah entri host ini yang sudah di-flush ke file. Setiap entri yang diterima log() akhirnya dihitung
+    // tepat sekali di sini atau di getDroppedCount, jadi jumlah keduanya bisa ditunggu sampai semua entri selesai.
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    // Jumlah entri yang menunggu di antrean bersama, untuk semua host
+    public int getQueuedCount() {
+        return dispatcher.getQueuedCount();
+    }
+
+    // Menulis satu entri ke buffer file; flush dilakukan dispatcher sekali per batch.
+    // Hasilnya false jika entri tidak tertulis.
+    boolean write(Entry entry) {
+        if (finished) {
+            // Sampai setelah penanda tutup, misalnya dari request yang mulai sebelum host dihapus
+            dropped.increment();
+            return false;
+        }
+        try {
+            // Entri yang timestamp-nya sedikit sebelum tengah malam tetapi baru sampai setelah hari berganti
+            // tetap ditulis ke file yang sedang terbuka, supaya file tidak ditutup-buka bolak-balik
+            if (entry.timestamp >= nextDayStart
+                    || entry.timestamp < currentDayStart - AccessLogStore.ORDER_SLACK_MILLIS) {
+                rotate(entry.timestamp);
+            }
+            // Format pesan log dengan tanggal, alamat IP, dan URL permintaan
+            currentWriter.write(String.format("[%s] %s - %s\n", new Date(entry.timestamp), entry.ipAddress,
+                    entry.requestURL + " : " + entry.message));
+            if (entry.status > 0 && currentSegment != null) {
+                currentSegment.append(entry.timestamp, entry.ipAddress, entry.requestURL, entry.status,
+                        entry.bytes, entry.latencyMicros);
+            }
+            unflushed++;
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            dropped.increment();
+            closeCurrentFile(); // dicoba buka ulang pada entri berikutnya
+            return false;
+        }
+    }
+
+    void flush() {
+        try {
+            if (currentWriter != null) {
+                currentWriter.flush();
+            }
+            if (currentSegment != null) {
+                currentSegment.flush();
+            }
+            written.add(unflushed);
+            unflushed = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+            dropped.add(unflushed);
+            unflushed = 0;
+            closeCurrentFile();
+        }
+    }
+
+    // Dipanggil thread penulis saat penanda tutup sampai atau saat dispatcher berhenti
+    void closeFiles() {
+        finished = true;
+        closeCurrentFile();
+    }
+
+    // Menutup file hari sebelumnya dan membuka file untuk hari dari timestamp ini
+    private void rotate(long timestamp) throws IOException {
+        closeCurrentFile();
+        LocalDate day = LocalDate.ofInstant(Instant.ofEpochMilli(timestamp), zone);
+        currentDayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        nextDayStart = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+
+        // Membuat direktori logs jika belum ada
+        Files.createDirectories(logsDir);
+        Path logFile = logsDir.resolve(day + ".log"); // LocalDate.toString() berformat yyyy-MM-dd
+        currentWriter = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        try {
+            currentSegment = new AccessLogStore.SegmentWriter(logsDir.resolve(day + AccessLogStore.SEGMENT_SUFFIX));
+        } catch (IOException e) {
+            // Segmen biner yang rusak tidak boleh ikut menghentikan log teks hari ini
+            e.printStackTrace();
+        }
+    }
+
+    // Entri yang masih di buffer ikut di-flush oleh close, atau hilang jika close gagal
+    private void closeCurrentFile() {
+        if (currentWriter != null) {
+            try {
+                currentWriter.close();
+                written.add(unflushed);
+            } catch (IOException e) {
+                e.printStackTrace();
+                dropped.add(unflushed);
+            }
+            unflushed = 0;
+            currentWriter = null;
+        }
+        if (currentSegment != null) {
+            try {
+                currentSegment.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            currentSegment = null;
+        }
+        currentDayStart = Long.MAX_VALUE;
+        nextDayStart = Long.MIN_VALUE;
+    }
+}
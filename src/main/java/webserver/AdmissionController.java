@@ -0,0 +1,235 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pembatas beban di depan handler: batas koneksi global dan per IP, token bucket per IP untuk laju request,
+// dan penolakan cepat (503/429 dengan Retry-After) supaya koneksi berlebih tidak menumpuk di antrean.
+public class AdmissionController {
+    // Alasan penolakan, masing-masing punya penghitung sendiri untuk metrik
+    public enum Rejection {
+        CONNECTIONS, // batas koneksi global tercapai
+        CONNECTIONS_PER_IP, // satu alamat IP membuka terlalu banyak koneksi
+        RATE_LIMIT, // token bucket alamat IP kosong
+        OVERLOAD, // pool atau antrean worker penuh
+        READ_TIMEOUT, // header request tidak selesai dikirim dalam batas waktu baca
+        WRITE_TIMEOUT // klien tidak membaca respons dalam batas waktu tulis
+    }
+
+    private static final long BUCKET_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final int SHEDDER_THREADS = 4;
+    private static final int SHED_DRAIN_BYTES = 16 * 1024; // isi request yang dibaca sebelum koneksi ditolak ditutup
+
+    // Token bucket untuk satu alamat IP
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double burst, long now) {
+            this.tokens = burst;
+            this.lastRefill = now;
+        }
+
+        synchronized boolean tryTake(double ratePerSecond, double burst, long now) {
+            refill(ratePerSecond, burst, now);
+            if (tokens >= 1) {
+                tokens--;
+                return true;
+            }
+            return false;
+        }
+
+        // Detik sampai satu token tersedia lagi, dibulatkan ke atas
+        synchronized long secondsUntilToken(double ratePerSecond) {
+            return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerSecond));
+        }
+
+        synchronized boolean isFull(double ratePerSecond, double burst, long now) {
+            refill(ratePerSecond, burst, now);
+            return tokens >= burst;
+        }
+
+        private void refill(double ratePerSecond, double burst, long now) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1e9 * ratePerSecond);
+            lastRefill = now;
+        }
+    }
+
+    private final int maxConnections;
+    private final int maxConnectionsPerIp;
+    private final double requestsPerSecond;
+    private final double burst;
+    private final int retryAfterSeconds;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Map<String, Integer> connectionsPerIp = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private volatile long lastBucketSweep = System.nanoTime();
+    private final LongAdder[] rejections = new LongAdder[Rejection.values().length];
+    // Beberapa thread kecil untuk menulis 503 dan menutup koneksi yang ditolak, supaya thread accept tidak tertahan
+    private final ThreadPoolExecutor shedder;
+
+    // Nilai 0 berarti batas tersebut tidak dipakai
+    public AdmissionController(int maxConnections, int maxConnectionsPerIp, double requestsPerSecond, int burst,
+                               int retryAfterSeconds) {
+        this.maxConnections = maxConnections;
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = Math.max(1, burst > 0 ? burst : Math.ceil(requestsPerSecond));
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] = new LongAdder();
+        }
+        shedder = new ThreadPoolExecutor(SHEDDER_THREADS, SHEDDER_THREADS, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1024), runnable -> {
+            Thread thread = new Thread(runnable, "admission-shedder");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        shedder.allowCoreThreadTimeOut(true);
+    }
+
+    // Dipanggil setelah accept; null jika koneksi boleh dilayani, selain itu alasan penolakannya.
+    // Koneksi yang diterima harus dilepas lagi dengan connectionClosed.
+    public Rejection tryAcquireConnection(String ipAddress) {
+        int active = connections.incrementAndGet();
+        if (maxConnections > 0 && active > maxConnections) {
+            connections.decrementAndGet();
+            return record(Rejection.CONNECTIONS);
+        }
+        if (maxConnectionsPerIp > 0 && connectionsPerIp.merge(ipAddress, 1, Integer::sum) > maxConnectionsPerIp) {
+            releasePerIp(ipAddress);
+            connections.decrementAndGet();
+            return record(Rejection.CONNECTIONS_PER_IP);
+        }
+        return null;
+    }
+
+    public void connectionClosed(String ipAddress) {
+        connections.decrementAndGet();
+        if (maxConnectionsPerIp > 0) {
+            releasePerIp(ipAddress);
+        }
+    }
+
+    // Mengambil satu token untuk request dari alamat ini, false jika laju request-nya melebihi batas
+    public boolean tryAcquireRequest(String ipAddress) {
+        if (requestsPerSecond <= 0) {
+            return true;
+        }
+        long now = System.nanoTime();
+        sweepBuckets(now);
+        TokenBucket bucket = buckets.computeIfAbsent(ipAddress, key -> new TokenBucket(burst, now));
+        if (bucket.tryTake(requestsPerSecond, burst, now)) {
+            return true;
+        }
+        record(Rejection.RATE_LIMIT);
+        return false;
+    }
+
+    // Nilai Retry-After untuk klien yang kena batas laju
+    public long retryAfterForRateLimit(String ipAddress) {
+        TokenBucket bucket = buckets.get(ipAddress);
+        return bucket != null ? bucket.secondsUntilToken(requestsPerSecond) : retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public Rejection record(Rejection rejection) {
+        rejections[rejection.ordinal()].increment();
+        return rejection;
+    }
+
+    public long getRejections(Rejection rejection) {
+        return rejections[rejection.ordinal()].sum();
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    // Menjawab koneksi yang ditolak dengan 503 (atau 429 untuk batas per IP) lalu menutupnya.
+    // Dikerjakan di thread shedder; jika antreannya pun penuh, koneksi langsung ditutup.
+    public void shed(SocketChannel channel, Rejection rejection) {
+        try {
+            shedder.execute(() -> writeRejection(channel, rejection));
+        } catch (RuntimeException e) {
+            closeQuietly(channel);
+        }
+    }
+
+    public void close() {
+        shedder.shutdownNow();
+    }
+
+    // Alamat IP dari socket yang baru diterima
+    static String addressOf(SocketChannel channel) {
+        try {
+            return ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+        } catch (IOException | RuntimeException e) {
+            return "unknown";
+        }
+    }
+
+    private void writeRejection(SocketChannel channel, Rejection rejection) {
+        boolean perClient = rejection == Rejection.CONNECTIONS_PER_IP;
+        String response = (perClient ? "HTTP/1.1 429 Too Many Requests\r\n" : "HTTP/1.1 503 Service Unavailable\r\n")
+                + "Retry-After: " + retryAfterSeconds + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+        try {
+            Socket socket = channel.socket();
+            socket.setSoTimeout(100);
+            socket.getOutputStream().write(response.getBytes(StandardCharsets.ISO_8859_1));
+            socket.shutdownOutput();
+            // Request yang sudah terkirim dibaca dulu, kalau tidak close() mengirim RST dan klien bisa kehilangan 503-nya
+            InputStream in = socket.getInputStream();
+            byte[] drain = new byte[4096];
+            int total = 0;
+            int n;
+            while (total < SHED_DRAIN_BYTES && (n = in.read(drain)) > 0) {
+                total += n;
+            }
+        } catch (IOException e) {
+            // Klien sudah pergi atau tidak mengirim apa-apa dalam 100 ms
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    // Entri IP dihapus saat jumlahnya kembali nol; merge/computeIfPresent atomik per kunci
+    private void releasePerIp(String ipAddress) {
+        connectionsPerIp.computeIfPresent(ipAddress, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // Bucket yang sudah penuh lagi sama saja dengan bucket baru, jadi dibuang agar map tidak tumbuh terus
+    private void sweepBuckets(long now) {
+        if (now - lastBucketSweep < BUCKET_SWEEP_INTERVAL_NANOS) {
+            return;
+        }
+        lastBucketSweep = now;
+        Iterator<TokenBucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFull(requestsPerSecond, burst, now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package webserver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Satu rentang byte dari header Range, start dan end sama-sama inklusif
+public final class ByteRange {
+    private static final int MAX_RANGES = 32; // batas jumlah rentang per request agar tidak disalahgunakan
+
+    final long start;
+    final long end;
+
+    ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long fileLength) {
+        return "bytes " + start + "-" + end + "/" + fileLength;
+    }
+
+    // Mengurai header Range untuk file sepanjang fileLength.
+    // Hasilnya null jika header tidak valid (diabaikan, kirim file utuh),
+    // list kosong jika tidak ada rentang yang bisa dipenuhi (416),
+    // selain itu rentang yang sudah diurutkan dan digabung jika saling tumpang tindih.
+    static List<ByteRange> parse(String header, long fileLength) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>();
+        for (String rawSpec : specs) {
+            String spec = rawSpec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // Bentuk "-n": n byte terakhir dari file
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && fileLength > 0) {
+                        ranges.add(new ByteRange(Math.max(0, fileLength - suffix), fileLength - 1));
+                    }
+                } else {
+                    long start = Long.parseLong(first);
+                    long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    // Rentang yang dimulai di luar file tidak bisa dipenuhi dan dilewati
+                    if (start < fileLength) {
+                        ranges.add(new ByteRange(start, Math.min(end, fileLength - 1)));
+                    }
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return coalesce(ranges);
+    }
+
+    // Menggabungkan rentang yang tumpang tindih atau bersebelahan
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+        if (ranges.size() < 2) {
+            return ranges;
+        }
+        ranges.sort(Comparator.comparingLong(range -> range.start));
+        List<ByteRange> merged = new ArrayList<>();
+        ByteRange current = ranges.get(0);
+        for (int i = 1; i < ranges.size(); i++) {
+            ByteRange next = ranges.get(i);
+            if (next.start <= current.end + 1) {
+                current = new ByteRange(current.start, Math.max(current.end, next.end));
+            } else {
+                merged.add(current);
+                current = next;
+            }
+        }
+        merged.add(current);
+        return merged;
+    }
+}
@@ -0,0 +1,390 @@
+package webserver;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Membuat dan menyimpan halaman daftar direktori yang sudah di-encode (UTF-8 dan gzip).
+// Isi direktori dibaca lewat DirectoryStream; hanya entri sampai halaman yang diminta yang ditahan di memori.
+// Waktu modifikasi direktori hanya berubah saat entri ditambah, dihapus, atau diganti namanya, tidak saat isi
+// file diubah. Karena itu hanya halaman yang diurutkan menurut nama yang disimpan, dan ukuran serta waktu
+// modifikasi file yang ditampilkannya diperiksa ulang setiap kali halaman itu diambil dari cache. Halaman yang
+// diurutkan menurut ukuran atau waktu modifikasi selalu dibuat ulang.
+public class DirectoryListingCache {
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    public static final int MAX_PAGE_SIZE = 1000;
+    private static final int MAX_COUNTED_DIRECTORIES = 1024;
+
+    // Halaman yang sudah jadi, siap dikirim
+    public static final class Page {
+        final byte[] body;
+        final byte[] gzipBody;
+        final long directoryModified;
+        // File yang tampil di halaman ini beserta ukuran dan waktu modifikasi yang tertulis di HTML-nya
+        private final Path[] shownFiles;
+        private final long[] shownSizes;
+        private final long[] shownModified;
+
+        Page(byte[] body, byte[] gzipBody, long directoryModified, List<Item> shown) {
+            this.body = body;
+            this.gzipBody = gzipBody;
+            this.directoryModified = directoryModified;
+            List<Item> files = new ArrayList<>(shown.size());
+            for (Item item : shown) {
+                if (!item.directory) {
+                    files.add(item);
+                }
+            }
+            shownFiles = new Path[files.size()];
+            shownSizes = new long[files.size()];
+            shownModified = new long[files.size()];
+            for (int i = 0; i < files.size(); i++) {
+                shownFiles[i] = files.get(i).path;
+                shownSizes[i] = files.get(i).size;
+                shownModified[i] = files.get(i).modified;
+            }
+        }
+
+        long weight() {
+            return body.length + gzipBody.length;
+        }
+
+        // Stat ulang file yang ditampilkan; jauh lebih murah daripada membaca dan mengurutkan seluruh direktori
+        boolean isFresh(long currentDirectoryModified) {
+            if (directoryModified != currentDirectoryModified) {
+                return false;
+            }
+            for (int i = 0; i < shownFiles.length; i++) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(shownFiles[i], BasicFileAttributes.class);
+                    if (attributes.size() != shownSizes[i]
+                            || attributes.lastModifiedTime().toMillis() != shownModified[i]) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // Jumlah entri direktori dari listing terakhir, berlaku selama waktu modifikasi direktorinya sama
+    private static final class EntryCount {
+        final long directoryModified;
+        final int total;
+
+        EntryCount(long directoryModified, int total) {
+            this.directoryModified = directoryModified;
+            this.total = total;
+        }
+    }
+
+    // Satu entri direktori; ukuran dan waktu modifikasi hanya dibaca jika dibutuhkan
+    private static final class Item {
+        final Path path;
+        final String name;
+        boolean directory;
+        long size = -1;
+        long modified;
+
+        Item(Path path) {
+            this.path = path;
+            this.name = path.getFileName().toString();
+        }
+
+        void loadAttributes() {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                directory = attributes.isDirectory();
+                size = attributes.size();
+                modified = attributes.lastModifiedTime().toMillis();
+            } catch (IOException e) {
+                size = 0; // file terhapus selama listing, tetap ditampilkan tanpa detail
+            }
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<Path, EntryCount> entryCounts = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, EntryCount> eldest) {
+            return size() > MAX_COUNTED_DIRECTORIES;
+        }
+    };
+    private long currentBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DirectoryListingCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Mengambil halaman listing sesuai parameter query (page, size, sort=name|size|modified, order=asc|desc)
+    public Page get(Path directory, boolean hasParent, Map<String, String> query) throws IOException {
+        int pageSize = clamp(parseInt(query.get("size"), DEFAULT_PAGE_SIZE), 1, MAX_PAGE_SIZE);
+        int pageNumber = Math.max(1, parseInt(query.get("page"), 1));
+        String sort = query.getOrDefault("sort", "name");
+        if (!sort.equals("size") && !sort.equals("modified")) {
+            sort = "name";
+        }
+        boolean descending = "desc".equals(query.get("order"));
+
+        Path normalized = directory.toAbsolutePath().normalize();
+        long directoryModified = Files.getLastModifiedTime(directory).toMillis();
+        if (!sort.equals("name")) {
+            // Urutan bergantung pada atribut semua file, yang bisa berubah tanpa mengubah direktorinya
+            misses.increment();
+            return render(directory, hasParent, sort, descending, pageNumber, pageSize, directoryModified).page;
+        }
+        Page cached = null;
+        String key = null;
+        synchronized (this) {
+            EntryCount count = entryCounts.get(normalized);
+            if (count != null && count.directoryModified == directoryModified) {
+                // Halaman di luar jangkauan dan ukuran halaman yang melebihi isi direktori memakai kunci yang
+                // sama dengan halaman yang benar-benar ditampilkan, jadi tidak memaksa membaca ulang direktori
+                pageSize = Math.min(pageSize, Math.max(1, count.total));
+                pageNumber = Math.min(pageNumber, pageCount(count.total, pageSize));
+                key = key(normalized, sort, descending, pageNumber, pageSize, hasParent);
+                cached = pages.get(key);
+            }
+        }
+        if (cached != null && cached.isFresh(directoryModified)) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        Rendered rendered = render(directory, hasParent, sort, descending, pageNumber, pageSize, directoryModified);
+        synchronized (this) {
+            entryCounts.put(normalized, new EntryCount(directoryModified, rendered.total));
+        }
+        if (key == null || rendered.pageNumber != pageNumber || rendered.pageSize != pageSize) {
+            key = key(normalized, sort, descending, rendered.pageNumber, rendered.pageSize, hasParent);
+        }
+        store(key, rendered.page);
+        return rendered.page;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private synchronized void store(String key, Page page) {
+        if (page.weight() > maxBytes) {
+            return;
+        }
+        Page previous = pages.put(key, page);
+        if (previous != null) {
+            currentBytes -= previous.weight();
+        }
+        currentBytes += page.weight();
+        Iterator<Page> iterator = pages.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().weight();
+            iterator.remove();
+        }
+    }
+
+    private static String key(Path directory, String sort, boolean descending, int pageNumber, int pageSize,
+                              boolean hasParent) {
+        return directory + "?" + sort + (descending ? "-desc" : "") + "&" + pageNumber + "&" + pageSize
+                + (hasParent ? "&p" : "");
+    }
+
+    private static int pageCount(int total, int pageSize) {
+        return Math.max(1, (total + pageSize - 1) / pageSize);
+    }
+
+    // Hasil render beserta halaman dan ukuran halaman yang sebenarnya dipakai setelah disesuaikan dengan isi direktori
+    private static final class Rendered {
+        final Page page;
+        final int total;
+        final int pageNumber;
+        final int pageSize;
+
+        Rendered(Page page, int total, int pageNumber, int pageSize) {
+            this.page = page;
+            this.total = total;
+            this.pageNumber = pageNumber;
+            this.pageSize = pageSize;
+        }
+    }
+
+    private Rendered render(Path directory, boolean hasParent, String sort, boolean descending,
+                            int pageNumber, int pageSize, long directoryModified) throws IOException {
+        Comparator<Item> comparator = comparator(sort);
+        if (descending) {
+            comparator = comparator.reversed();
+        }
+        boolean needsAttributes = !sort.equals("name");
+
+        // Heap terbalik berukuran tetap: hanya entri sampai akhir halaman ini yang disimpan
+        long keep = (long) pageNumber * pageSize;
+        PriorityQueue<Item> selected = new PriorityQueue<>(comparator.reversed());
+        int total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                Item item = new Item(path);
+                if (needsAttributes) {
+                    item.loadAttributes();
+                }
+                total++;
+                selected.add(item);
+                if (selected.size() > keep) {
+                    selected.poll();
+                }
+            }
+        }
+        List<Item> ordered = new ArrayList<>(selected);
+        ordered.sort(comparator);
+        // Halaman di luar jangkauan menampilkan halaman terakhir; semua entrinya masih ada di heap karena
+        // keep lebih besar dari jumlah entri
+        pageSize = Math.min(pageSize, Math.max(1, total));
+        pageNumber = Math.min(pageNumber, pageCount(total, pageSize));
+        int from = (int) Math.min(ordered.size(), (long) (pageNumber - 1) * pageSize);
+        int to = (int) Math.min(ordered.size(), (long) pageNumber * pageSize);
+        List<Item> items = ordered.subList(from, to);
+        for (Item item : items) {
+            if (item.size < 0) {
+                item.loadAttributes();
+            }
+        }
+
+        byte[] body = html(items, hasParent, total, sort, descending, pageNumber, pageSize)
+                .getBytes(StandardCharsets.UTF_8);
+        Page page = new Page(body, HttpRequestHandler.gzip(body), directoryModified, items);
+        return new Rendered(page, total, pageNumber, pageSize);
+    }
+
+    private static Comparator<Item> comparator(String sort) {
+        Comparator<Item> byName = Comparator.comparing(item -> item.name);
+        switch (sort) {
+            case "size":
+                return Comparator.<Item>comparingLong(item -> item.size).thenComparing(byName);
+            case "modified":
+                return Comparator.<Item>comparingLong(item -> item.modified).thenComparing(byName);
+            default:
+                return byName;
+        }
+    }
+
+    // Membangun respons HTML untuk menampilkan daftar file
+    private static String html(List<Item> items, boolean hasParent, int total, String sort, boolean descending,
+                               int pageNumber, int pageSize) {
+        StringBuilder responseBuilder = new StringBuilder(512 + items.size() * 160);
+        responseBuilder.append("<html><head><meta charset=\"utf-8\">");
+
+        // Menambahkan style untuk background image dengan URL eksternal
+        responseBuilder.append("<style>");
+        responseBuilder.append("body::before { content: ''; position: fixed; top: 0; left: 0; width: 100%; height: 100%; ");
+        responseBuilder.append("background-image: url('https://upload.wikimedia.org/wikipedia/commons/9/98/Logo_udinus1.jpg'); ");
+        responseBuilder.append("background-size: 30%; background-repeat: no-repeat; background-position: center; opacity: 0.5; z-index: -1; }");
+        responseBuilder.append("</style>");
+
+        responseBuilder.append("</head><body><h1>Directory Listing</h1>");
+
+        // Menambahkan tombol "Back" jika tidak berada di direktori root
+        if (hasParent) {
+            responseBuilder.append("<button onclick=\"goBack()\">Back</button><br>");
+        }
+
+        // Tautan untuk mengurutkan berdasarkan nama, ukuran, atau waktu modifikasi
+        responseBuilder.append("<p>Sort: ");
+        for (String column : new String[] {"name", "size", "modified"}) {
+            boolean nextDescending = column.equals(sort) && !descending;
+            responseBuilder.append("<a href=\"?sort=").append(column).append("&order=")
+                    .append(nextDescending ? "desc" : "asc").append("&size=").append(pageSize).append("\">")
+                    .append(column).append("</a> ");
+        }
+        responseBuilder.append("</p>");
+
+        // Membuat daftar file yang ada dalam direktori dalam bentuk list dan hyperlink
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        responseBuilder.append("<ul>");
+        for (Item item : items) {
+            String href = URLEncoder.encode(item.name, StandardCharsets.UTF_8).replace("+", "%20")
+                    + (item.directory ? "/" : "");
+            // Memberi hyperlink pada setiap file dalam daftar
+            responseBuilder.append("<li><a href=\"").append(href).append("\">").append(escapeHtml(item.name))
+                    .append(item.directory ? "/" : "").append("</a>");
+            if (!item.directory) {
+                responseBuilder.append(" (").append(item.size).append(" bytes, ")
+                        .append(dateFormat.format(new Date(item.modified))).append(")");
+            }
+            responseBuilder.append("</li>");
+        }
+        responseBuilder.append("</ul>");
+
+        // Navigasi halaman
+        int pageCount = pageCount(total, pageSize);
+        String common = "&size=" + pageSize + "&sort=" + sort + "&order=" + (descending ? "desc" : "asc");
+        responseBuilder.append("<p>");
+        if (pageNumber > 1) {
+            responseBuilder.append("<a href=\"?page=").append(pageNumber - 1).append(common).append("\">Previous</a> ");
+        }
+        responseBuilder.append("Page ").append(pageNumber).append(" of ").append(pageCount)
+                .append(" (").append(total).append(" entries)");
+        if (pageNumber < pageCount) {
+            responseBuilder.append(" <a href=\"?page=").append(pageNumber + 1).append(common).append("\">Next</a>");
+        }
+        responseBuilder.append("</p>");
+
+        // Menambahkan skrip untuk tombol back
+        responseBuilder.append("<script>");
+        responseBuilder.append("function goBack() { window.history.back(); }"); // Skrip JavaScript untuk kembali
+        responseBuilder.append("</script>");
+        responseBuilder.append("</body></html>");
+        return responseBuilder.toString();
+    }
+
+    private static String escapeHtml(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '"': escaped.append("&quot;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,30 @@
+package webserver;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Strategi eksekusi untuk handler koneksi pada engine BLOCKING
+public enum ExecutionMode {
+    CACHED, // thread pool tanpa batas (perilaku awal)
+    VIRTUAL, // satu virtual thread per koneksi
+    BOUNDED; // thread platform dengan jumlah dan antrean terbatas
+
+    // Membuat executor sesuai mode; ukuran pool dan antrean hanya dipakai oleh BOUNDED
+    public ExecutorService createExecutor(int maxThreads, int queueCapacity) {
+        switch (this) {
+            case VIRTUAL:
+                return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+            case BOUNDED:
+                // Jika pool dan antrean penuh, execute() melempar RejectedExecutionException
+                ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), new ThreadPoolExecutor.AbortPolicy());
+                executor.allowCoreThreadTimeOut(true);
+                return executor;
+            default:
+                return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package webserver;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Satu WatchService dan satu thread yang memantau web root semua StaticFileCache, berapa pun jumlah virtual
+// host-nya. Direktori yang dipakai beberapa host hanya terdaftar sekali; setiap perubahan diteruskan ke semua
+// cache yang root-nya mencakup path itu.
+public class FileChangeWatcher {
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+    private final List<StaticFileCache> caches = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    public void start() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            // Tanpa WatchService cache tidak bisa dijaga tetap segar, jadi register selalu gagal
+            e.printStackTrace();
+            return;
+        }
+        watcherThread = new Thread(this::watchLoop, "file-cache-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        watchedDirectories.clear();
+        caches.clear();
+    }
+
+    // Mulai memantau root cache ini; false jika tidak bisa dipantau sehingga cache harus tetap nonaktif
+    synchronized boolean register(StaticFileCache cache) {
+        if (watchService == null) {
+            return false;
+        }
+        try {
+            registerTree(cache.getRoot());
+        } catch (IOException | ClosedWatchServiceException e) {
+            e.printStackTrace();
+            return false;
+        }
+        caches.add(cache);
+        return true;
+    }
+
+    // Berhenti memantau untuk cache ini; direktori yang masih dipakai cache lain tetap terdaftar
+    synchronized void unregister(StaticFileCache cache) {
+        caches.remove(cache);
+        Iterator<Map.Entry<WatchKey, Path>> iterator = watchedDirectories.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<WatchKey, Path> entry = iterator.next();
+            if (!isWatchedByAny(entry.getValue())) {
+                entry.getKey().cancel();
+                iterator.remove();
+            }
+        }
+    }
+
+    public int getWatchedDirectoryCount() {
+        return watchedDirectories.size();
+    }
+
+    private boolean isWatchedByAny(Path directory) {
+        for (StaticFileCache cache : caches) {
+            if (directory.startsWith(cache.getRoot())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = watchedDirectories.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Sebagian event hilang, aman-nya buang semua entri di bawah direktori ini
+                        for (StaticFileCache cache : caches) {
+                            if (directory == null || overlaps(directory, cache.getRoot())) {
+                                cache.clear();
+                            }
+                        }
+                        continue;
+                    }
+                    if (directory == null) {
+                        continue;
+                    }
+                    Path changed = directory.resolve((Path) event.context());
+                    invalidate(changed);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        try {
+                            synchronized (this) {
+                                if (isWatchedByAny(changed)) {
+                                    registerTree(changed);
+                                }
+                            }
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(key);
+                    if (directory != null) {
+                        invalidate(directory);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Watcher ditutup
+        }
+    }
+
+    // Path yang berubah bisa berada di dalam root sebuah cache atau justru berisi root itu (misalnya
+    // direktori induknya dihapus); keduanya membuat entri cache itu basi
+    private void invalidate(Path changed) {
+        for (StaticFileCache cache : caches) {
+            if (overlaps(changed, cache.getRoot())) {
+                cache.invalidate(changed);
+            }
+        }
+    }
+
+    private static boolean overlaps(Path path, Path root) {
+        return path.startsWith(root) || root.startsWith(path);
+    }
+
+    // Mendaftarkan direktori dan semua subdirektorinya ke WatchService
+    private void registerTree(Path start) throws IOException {
+        if (!Files.isDirectory(start)) {
+            return;
+        }
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // Direktori yang sudah terdaftar untuk host lain mengembalikan WatchKey yang sama
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir.toAbsolutePath().normalize());
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
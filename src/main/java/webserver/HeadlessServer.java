@@ -0,0 +1,388 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Menjalankan WebServer tanpa GUI: pengaturan dibaca dari file properties dan/atau flag CLI.
+// Kelas ini tidak menyentuh JavaFX sama sekali, sehingga cocok untuk server dan untuk arsip AppCDS.
+public class HeadlessServer {
+    // Nama pengaturan yang dikenali, sama untuk file properties dan flag CLI (--port 8080 atau --port=8080)
+    private static final Set<String> KEYS = Set.of(
+            "root", "logs", "port", "engine", "execution-mode", "acceptors", "event-loops", "max-workers",
+            "worker-queue", "keep-alive-timeout", "max-keep-alive-requests", "cache-max-bytes", "cache-max-file-size",
+            "listing-cache-max-bytes", "zero-copy-threshold", "mapped-max-bytes", "mapped-max-file-size",
+            "mapped-idle-timeout", "mapped-min-requests", "log-queue", "log-overflow", "default-cache-control",
+            "max-request-line", "max-header-bytes", "max-connections", "max-connections-per-ip", "rate-limit",
+            "rate-burst", "retry-after", "read-timeout", "write-timeout", "http2");
+    private static final String CACHE_CONTROL_PREFIX = "cache-control."; // misalnya cache-control.css=public, max-age=60
+    // Pengaturan virtual host berbentuk host.NAMA.KUNCI, misalnya host.blog.example.com.root=/srv/blog
+    private static final String HOST_PREFIX = "host.";
+    private static final List<String> HOST_KEYS = List.of(
+            "root", "logs", "cache-max-bytes", "cache-max-file-size", "listing-cache-max-bytes");
+
+    public static void main(String[] args) {
+        try {
+            Properties config = new Properties();
+            boolean trainingRun = false;
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--headless")) {
+                    continue;
+                }
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    printUsage(System.out);
+                    return;
+                }
+                if (arg.equals("--training-run")) {
+                    trainingRun = true;
+                    continue;
+                }
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Argumen tidak dikenal: " + arg);
+                }
+                String name = arg.substring(2);
+                String value;
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                } else if (i + 1 < args.length) {
+                    value = args[++i];
+                } else {
+                    throw new IllegalArgumentException("Nilai untuk --" + name + " belum diisi");
+                }
+                if (name.equals("config")) {
+                    // File config dibaca dulu, flag CLI yang sudah ada tetap diutamakan
+                    Properties file = loadConfig(value);
+                    for (String key : file.stringPropertyNames()) {
+                        config.putIfAbsent(key, file.getProperty(key));
+                    }
+                } else {
+                    config.setProperty(name, value);
+                }
+            }
+
+            WebServer server = createServer(config);
+            if (trainingRun) {
+                trainingRun(server, Integer.parseInt(config.getProperty("port", "8000")));
+                return;
+            }
+            // SIGTERM / Ctrl+C: koneksi ditutup dan log yang masih di antrean ditulis dulu
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stopServer, "earlybird-shutdown"));
+            server.start();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        }
+    }
+
+    // Membaca file properties; nilai yang salah dilaporkan dengan nama file-nya
+    static Properties loadConfig(String path) {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Tidak bisa membaca file config " + path + ": " + e.getMessage());
+        }
+        return properties;
+    }
+
+    // Membuat WebServer dari pengaturan; pengaturan yang tidak diisi memakai default WebServer
+    static WebServer createServer(Properties config) {
+        for (String key : config.stringPropertyNames()) {
+            if (!KEYS.contains(key) && !key.startsWith(CACHE_CONTROL_PREFIX) && hostSetting(key) == null) {
+                throw new IllegalArgumentException("Pengaturan tidak dikenal: " + key);
+            }
+        }
+        String root = config.getProperty("root", "./webroot");
+        if (!Files.isDirectory(Paths.get(root))) {
+            throw new IllegalArgumentException("Direktori root tidak ditemukan: " + root);
+        }
+        WebServer server = new WebServer(root, config.getProperty("logs", "./logs"),
+                (int) parseNumber(config, "port", 8000));
+
+        String engine = config.getProperty("engine");
+        if (engine != null) {
+            server.setEngine(parseEnum(ServerEngine.class, "engine", engine));
+        }
+        String executionMode = config.getProperty("execution-mode");
+        if (executionMode != null) {
+            server.setExecutionMode(parseEnum(ExecutionMode.class, "execution-mode", executionMode));
+        }
+        String logOverflow = config.getProperty("log-overflow");
+        if (logOverflow != null) {
+            server.setLogOverflowPolicy(parseEnum(AccessLogWriter.OverflowPolicy.class, "log-overflow", logOverflow));
+        }
+        server.setAcceptorThreads((int) parseNumber(config, "acceptors", server.getAcceptorThreads()));
+        server.setEventLoopThreads((int) parseNumber(config, "event-loops", server.getEventLoopThreads()));
+        server.setMaxWorkerThreads((int) parseNumber(config, "max-workers", server.getMaxWorkerThreads()));
+        server.setWorkerQueueCapacity((int) parseNumber(config, "worker-queue", server.getWorkerQueueCapacity()));
+        server.setKeepAliveTimeout((int) parseNumber(config, "keep-alive-timeout", server.getKeepAliveTimeout()));
+        server.setMaxKeepAliveRequests((int) parseNumber(config, "max-keep-alive-requests",
+                server.getMaxKeepAliveRequests()));
+        server.setCacheMaxBytes(parseNumber(config, "cache-max-bytes", server.getCacheMaxBytes()));
+        server.setCacheMaxFileSize(parseNumber(config, "cache-max-file-size", server.getCacheMaxFileSize()));
+        if (config.getProperty("listing-cache-max-bytes") != null) {
+            server.setListingCacheMaxBytes(parseNumber(config, "listing-cache-max-bytes", 0));
+        }
+        server.setZeroCopyThreshold(parseNumber(config, "zero-copy-threshold", server.getZeroCopyThreshold()));
+        server.setMappedMaxBytes(parseNumber(config, "mapped-max-bytes", server.getMappedMaxBytes()));
+        server.setMappedMaxFileSize(parseNumber(config, "mapped-max-file-size", server.getMappedMaxFileSize()));
+        server.setMappedIdleTimeout((int) parseNumber(config, "mapped-idle-timeout", server.getMappedIdleTimeout()));
+        server.setMappedMinRequests((int) parseNumber(config, "mapped-min-requests", server.getMappedMinRequests()));
+        server.setMaxRequestLineLength((int) parseNumber(config, "max-request-line", server.getMaxRequestLineLength()));
+        server.setMaxHeaderBytes((int) parseNumber(config, "max-header-bytes", server.getMaxHeaderBytes()));
+        server.setMaxConnections((int) parseNumber(config, "max-connections", server.getMaxConnections()));
+        server.setMaxConnectionsPerIp((int) parseNumber(config, "max-connections-per-ip",
+                server.getMaxConnectionsPerIp()));
+        server.setRequestRateLimit(parseDecimal(config, "rate-limit", server.getRequestRateLimit()));
+        server.setRequestBurst((int) parseNumber(config, "rate-burst", server.getRequestBurst()));
+        server.setRetryAfterSeconds((int) parseNumber(config, "retry-after", server.getRetryAfterSeconds()));
+        server.setReadTimeout((int) parseNumber(config, "read-timeout", server.getReadTimeout()));
+        server.setWriteTimeout((int) parseNumber(config, "write-timeout", server.getWriteTimeout()));
+        String http2 = config.getProperty("http2");
+        if (http2 != null) {
+            server.setHttp2Enabled(parseBoolean("http2", http2));
+        }
+        if (config.getProperty("log-queue") != null) {
+            server.setLogQueueCapacity((int) parseNumber(config, "log-queue", 0));
+        }
+        if (config.getProperty("default-cache-control") != null) {
+            server.setDefaultCacheControl(config.getProperty("default-cache-control"));
+        }
+        for (String key : config.stringPropertyNames()) {
+            if (key.startsWith(CACHE_CONTROL_PREFIX)) {
+                server.setCacheControl(key.substring(CACHE_CONTROL_PREFIX.length()).toLowerCase(Locale.ROOT),
+                        config.getProperty(key));
+            }
+        }
+        for (VirtualHost host : createVirtualHosts(config, server.getLogsPath())) {
+            server.addVirtualHost(host);
+        }
+        return server;
+    }
+
+    // Mengelompokkan pengaturan host.NAMA.KUNCI per nama host; setiap host wajib punya root,
+    // log-nya default ke subdirektori bernama host di direktori logs utama
+    static List<VirtualHost> createVirtualHosts(Properties config, String logsPath) {
+        Map<String, Properties> settingsByHost = new TreeMap<>();
+        for (String key : config.stringPropertyNames()) {
+            String[] setting = hostSetting(key);
+            if (setting != null) {
+                settingsByHost.computeIfAbsent(setting[0], name -> new Properties())
+                        .setProperty(setting[1], config.getProperty(key));
+            }
+        }
+        List<VirtualHost> hosts = new ArrayList<>();
+        for (Map.Entry<String, Properties> entry : settingsByHost.entrySet()) {
+            String name = entry.getKey();
+            Properties settings = entry.getValue();
+            String root = settings.getProperty("root");
+            if (root == null) {
+                throw new IllegalArgumentException("Virtual host " + name + " belum punya "
+                        + HOST_PREFIX + name + ".root");
+            }
+            if (!Files.isDirectory(Paths.get(root))) {
+                throw new IllegalArgumentException("Direktori root untuk " + name + " tidak ditemukan: " + root);
+            }
+            VirtualHost host = new VirtualHost(name, root,
+                    settings.getProperty("logs", Paths.get(logsPath, name).toString()));
+            host.setCacheMaxBytes(parseNumber(settings, "cache-max-bytes", host.getCacheMaxBytes()));
+            host.setCacheMaxFileSize(parseNumber(settings, "cache-max-file-size", host.getCacheMaxFileSize()));
+            host.setListingCacheMaxBytes(parseNumber(settings, "listing-cache-max-bytes",
+                    host.getListingCacheMaxBytes()));
+            hosts.add(host);
+        }
+        return hosts;
+    }
+
+    // Memecah host.NAMA.KUNCI menjadi {NAMA, KUNCI}, null jika key bukan pengaturan virtual host
+    private static String[] hostSetting(String key) {
+        if (!key.startsWith(HOST_PREFIX)) {
+            return null;
+        }
+        for (String hostKey : HOST_KEYS) {
+            int nameEnd = key.length() - hostKey.length() - 1;
+            if (nameEnd > HOST_PREFIX.length() && key.endsWith("." + hostKey)) {
+                return new String[] {key.substring(HOST_PREFIX.length(), nameEnd), hostKey};
+            }
+        }
+        return null;
+    }
+
+    // Angka bulat, boleh diberi akhiran k, m, atau g untuk ukuran (misalnya 64m)
+    private static long parseNumber(Properties config, String key, long defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        if (text.endsWith("k")) {
+            multiplier = 1024;
+        } else if (text.endsWith("m")) {
+            multiplier = 1024 * 1024;
+        } else if (text.endsWith("g")) {
+            multiplier = 1024 * 1024 * 1024;
+        }
+        if (multiplier != 1) {
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            long number = Long.parseLong(text);
+            if (number < 0) {
+                throw new NumberFormatException();
+            }
+            return Math.multiplyExact(number, multiplier);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+        }
+    }
+
+    // Angka desimal tidak negatif, misalnya 0.5 untuk satu request setiap dua detik
+    private static double parseDecimal(Properties config, String key, double defaultValue) {
+        String value = config.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            double number = Double.parseDouble(value.trim());
+            if (!(number >= 0) || Double.isInfinite(number)) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+        }
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String key, String value) {
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+        }
+    }
+
+    private static boolean parseBoolean(String key, String value) {
+        String normalized = value.trim().toLowerCase(Locale.ROOT);
+        if (normalized.equals("true") || normalized.equals("false")) {
+            return normalized.equals("true");
+        }
+        throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+    }
+
+    // Menjalankan server sebentar dan mengirim beberapa request ke dirinya sendiri, lalu berhenti.
+    // Dipakai bersama -XX:ArchiveClassesAtExit agar kelas jalur request ikut masuk arsip AppCDS.
+    private static void trainingRun(WebServer server, int port) {
+        Thread serverThread = new Thread(server::start, "earlybird-server");
+        serverThread.start();
+        String[] requests = {
+            "GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n",
+            "GET / HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\nConnection: close\r\n\r\n",
+            "GET /?sort=size&order=desc HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n",
+            "GET " + HttpRequestHandler.METRICS_PATH + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n",
+            "GET /training-run-missing-file HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n",
+            "HEAD / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+        };
+        try {
+            for (String request : requests) {
+                sendRequest(port, request);
+            }
+            System.out.println("Training run selesai, " + requests.length + " request dikirim");
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Training run gagal: " + e.getMessage());
+        } finally {
+            server.stopServer();
+            try {
+                serverThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Mengirim satu request dan membaca responsnya sampai koneksi ditutup server
+    private static void sendRequest(int port, String request) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress("127.0.0.1", port), 1000);
+                socket.setSoTimeout(10_000);
+                OutputStream out = socket.getOutputStream();
+                out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                InputStream in = socket.getInputStream();
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) >= 0) {
+                    // respons dibuang, yang penting jalurnya dijalankan
+                }
+                return;
+            } catch (IOException e) {
+                // Server mungkin belum selesai start
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -jar earlybirdwebserver.jar [--config FILE] [--NAME VALUE | --NAME=VALUE]...");
+        out.println("       java -cp ... com.mycompany.earlybirdwebserver.Earlybirdwebserver --headless [options]");
+        out.println();
+        out.println("Settings (as flags or keys in the properties file; flags win):");
+        out.println("  root                      web root directory (default ./webroot)");
+        out.println("  logs                      access log directory (default ./logs)");
+        out.println("  port                      listen port (default 8000)");
+        out.println("  engine                    BLOCKING or NIO");
+        out.println("  execution-mode            CACHED, VIRTUAL or BOUNDED (BLOCKING engine)");
+        out.println("  acceptors                 accept loops, one SO_REUSEPORT listener each where supported");
+        out.println("  event-loops               event loop threads (NIO engine)");
+        out.println("  max-workers, worker-queue thread and queue limits for BOUNDED");
+        out.println("  keep-alive-timeout        idle keep-alive timeout in milliseconds");
+        out.println("  max-keep-alive-requests   requests per connection");
+        out.println("  cache-max-bytes           static file cache budget, e.g. 64m");
+        out.println("  cache-max-file-size       largest cached file, e.g. 1m");
+        out.println("  listing-cache-max-bytes   directory listing cache budget");
+        out.println("  zero-copy-threshold       files above this size are sent with sendfile");
+        out.println("  mapped-max-bytes          memory-mapped file pool budget, e.g. 256m (0 = off)");
+        out.println("  mapped-max-file-size      largest memory-mapped file; larger ones use sendfile");
+        out.println("  mapped-idle-timeout       milliseconds before an unused mapping is dropped");
+        out.println("  mapped-min-requests       requests before a file is memory-mapped (default 3)");
+        out.println("  max-request-line          longest request line before 414, e.g. 8k");
+        out.println("  max-header-bytes          largest header section before 431, e.g. 16k");
+        out.println("  max-connections           open connections before new ones get 503 (0 = no limit)");
+        out.println("  max-connections-per-ip    open connections per client address (0 = no limit)");
+        out.println("  rate-limit, rate-burst    requests per second and bucket size per client (0 = off)");
+        out.println("  retry-after               Retry-After seconds sent with 503");
+        out.println("  read-timeout              milliseconds to receive a full request head");
+        out.println("  write-timeout             milliseconds a stalled socket write may take");
+        out.println("  http2                     true or false: accept h2c upgrade and prior knowledge");
+        out.println("  log-queue, log-overflow   access log queue size and DROP or BLOCK");
+        out.println("  default-cache-control     Cache-Control for unlisted extensions");
+        out.println("  cache-control.EXT         Cache-Control for one extension");
+        out.println("  host.NAME.root            web root for requests with Host: NAME (adds a virtual host)");
+        out.println("  host.NAME.logs            access log directory for NAME (default LOGS/NAME)");
+        out.println("  host.NAME.cache-max-bytes, host.NAME.cache-max-file-size, host.NAME.listing-cache-max-bytes");
+        out.println();
+        out.println("  --training-run            start, send a few requests to itself and exit (for AppCDS)");
+    }
+}
@@ -0,0 +1,428 @@
+package webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Kompresi header HPACK (RFC 7541) untuk HTTP/2: tabel statis, tabel dinamis, dan kode Huffman.
+// Decoder mengikuti tabel dinamis klien; encoder untuk respons tidak memakai tabel dinamis sama sekali,
+// jadi cukup satu per koneksi dan tidak perlu sinkron dengan pengaturan ukuran tabel klien.
+final class Hpack {
+    // Header list yang melebihi batas decoder; isinya tetap di-decode agar tabel dinamis tetap sinkron
+    static final List<String[]> TOO_LARGE = List.of();
+
+    // Header block yang rusak, dijawab dengan COMPRESSION_ERROR untuk seluruh koneksi
+    static final class CompressionException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        CompressionException(String message) {
+            super(message);
+        }
+    }
+
+    private static final String[][] STATIC_TABLE = {
+        {":authority", ""},
+        {":method", "GET"},
+        {":method", "POST"},
+        {":path", "/"},
+        {":path", "/index.html"},
+        {":scheme", "http"},
+        {":scheme", "https"},
+        {":status", "200"},
+        {":status", "204"},
+        {":status", "206"},
+        {":status", "304"},
+        {":status", "400"},
+        {":status", "404"},
+        {":status", "500"},
+        {"accept-charset", ""},
+        {"accept-encoding", "gzip, deflate"},
+        {"accept-language", ""},
+        {"accept-ranges", ""},
+        {"accept", ""},
+        {"access-control-allow-origin", ""},
+        {"age", ""},
+        {"allow", ""},
+        {"authorization", ""},
+        {"cache-control", ""},
+        {"content-disposition", ""},
+        {"content-encoding", ""},
+        {"content-language", ""},
+        {"content-length", ""},
+        {"content-location", ""},
+        {"content-range", ""},
+        {"content-type", ""},
+        {"cookie", ""},
+        {"date", ""},
+        {"etag", ""},
+        {"expect", ""},
+        {"expires", ""},
+        {"from", ""},
+        {"host", ""},
+        {"if-match", ""},
+        {"if-modified-since", ""},
+        {"if-none-match", ""},
+        {"if-range", ""},
+        {"if-unmodified-since", ""},
+        {"last-modified", ""},
+        {"link", ""},
+        {"location", ""},
+        {"max-forwards", ""},
+        {"proxy-authenticate", ""},
+        {"proxy-authorization", ""},
+        {"range", ""},
+        {"referer", ""},
+        {"refresh", ""},
+        {"retry-after", ""},
+        {"server", ""},
+        {"set-cookie", ""},
+        {"strict-transport-security", ""},
+        {"transfer-encoding", ""},
+        {"user-agent", ""},
+        {"vary", ""},
+        {"via", ""},
+        {"www-authenticate", ""}
+    };
+    // Indeks statis pertama untuk setiap nama header, dipakai encoder
+    private static final Map<String, Integer> STATIC_NAME_INDEX = new HashMap<>();
+
+    // Kode Huffman RFC 7541 lampiran B untuk simbol 0..255 (EOS 30 bit semuanya 1 tidak dipakai saat decode)
+    private static final int[] HUFFMAN_CODES = {
+            0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+            0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+            0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+            0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+            0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+            0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+            0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+            0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+            0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+            0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+            0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+            0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+            0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+            0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+            0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+            0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+            0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+            0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+            0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+            0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+            0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+            0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+            0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+            0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+            0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+            0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+            0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+            0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+            0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+            0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+            0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+            0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee
+    };
+    private static final byte[] HUFFMAN_LENGTHS = {
+            13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+            6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+            5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+            15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+            6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+            24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+            22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+            21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+            26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+            19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+            20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+            26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26
+    };
+
+    // Pohon Huffman untuk decode: anak kiri/kanan per simpul, daun disimpan sebagai -(simbol + 1), 0 berarti tidak ada
+    private static final int[] HUFFMAN_TREE = new int[256 * 2];
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            STATIC_NAME_INDEX.put(STATIC_TABLE[i][0], i + 1);
+        }
+        int nodes = 1; // simpul 0 adalah akar
+        for (int symbol = 0; symbol < 256; symbol++) {
+            int node = 0;
+            int length = HUFFMAN_LENGTHS[symbol];
+            for (int bit = length - 1; bit >= 0; bit--) {
+                int slot = node * 2 + ((HUFFMAN_CODES[symbol] >>> bit) & 1);
+                if (bit == 0) {
+                    HUFFMAN_TREE[slot] = -(symbol + 1);
+                } else {
+                    if (HUFFMAN_TREE[slot] == 0) {
+                        HUFFMAN_TREE[slot] = nodes++;
+                    }
+                    node = HUFFMAN_TREE[slot];
+                }
+            }
+        }
+    }
+
+    private Hpack() {
+    }
+
+    // Decoder untuk header block dari klien; satu per koneksi karena tabel dinamisnya milik koneksi itu
+    static final class Decoder {
+        private final ArrayDeque<String[]> dynamicTable = new ArrayDeque<>(); // entri terbaru di depan
+        private final int maxTableSizeLimit; // SETTINGS_HEADER_TABLE_SIZE yang kita umumkan
+        private int maxTableSize;
+        private int tableSize;
+        private byte[] block;
+        private int position;
+        private int end;
+
+        Decoder(int maxTableSizeLimit) {
+            this.maxTableSizeLimit = maxTableSizeLimit;
+            this.maxTableSize = maxTableSizeLimit;
+        }
+
+        // Menghasilkan pasangan {nama, nilai} sesuai urutan; TOO_LARGE jika ukuran header list (nama + nilai + 32
+        // per field) melebihi maxHeaderListSize
+        List<String[]> decode(byte[] data, int offset, int length, int maxHeaderListSize) throws CompressionException {
+            block = data;
+            position = offset;
+            end = offset + length;
+            List<String[]> headers = new ArrayList<>();
+            long listSize = 0;
+            boolean headerSeen = false;
+            while (position < end) {
+                int first = block[position] & 0xff;
+                String[] field;
+                if ((first & 0x80) != 0) {
+                    field = entry(readInteger(7));
+                } else if ((first & 0xc0) == 0x40) {
+                    field = readLiteral(6);
+                    addToTable(field);
+                } else if ((first & 0xe0) == 0x20) {
+                    // Perubahan ukuran tabel hanya boleh di awal header block
+                    if (headerSeen) {
+                        throw new CompressionException("Perubahan ukuran tabel di tengah header block");
+                    }
+                    int size = readInteger(5);
+                    if (size > maxTableSizeLimit) {
+                        throw new CompressionException("Ukuran tabel dinamis melebihi batas: " + size);
+                    }
+                    maxTableSize = size;
+                    evict(0);
+                    continue;
+                } else {
+                    field = readLiteral(4); // tanpa indexing atau never indexed
+                }
+                headerSeen = true;
+                listSize += field[0].length() + field[1].length() + 32;
+                if (listSize <= maxHeaderListSize) {
+                    headers.add(field);
+                }
+            }
+            block = null;
+            return listSize <= maxHeaderListSize ? headers : TOO_LARGE;
+        }
+
+        private String[] entry(int index) throws CompressionException {
+            if (index <= 0) {
+                throw new CompressionException("Indeks header 0");
+            }
+            if (index <= STATIC_TABLE.length) {
+                return STATIC_TABLE[index - 1];
+            }
+            int dynamicIndex = index - STATIC_TABLE.length - 1;
+            if (dynamicIndex >= dynamicTable.size()) {
+                throw new CompressionException("Indeks header di luar tabel: " + index);
+            }
+            int i = 0;
+            for (String[] field : dynamicTable) {
+                if (i++ == dynamicIndex) {
+                    return field;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        private String[] readLiteral(int prefixBits) throws CompressionException {
+            int nameIndex = readInteger(prefixBits);
+            String name = nameIndex == 0 ? readString() : entry(nameIndex)[0];
+            return new String[] {name, readString()};
+        }
+
+        private void addToTable(String[] field) {
+            int size = field[0].length() + field[1].length() + 32;
+            if (size > maxTableSize) {
+                // Entri yang lebih besar dari tabel mengosongkan tabel tanpa ikut disimpan
+                dynamicTable.clear();
+                tableSize = 0;
+                return;
+            }
+            evict(maxTableSize - size);
+            dynamicTable.addFirst(field);
+            tableSize += size;
+        }
+
+        private void evict(int targetSize) {
+            while (tableSize > targetSize) {
+                String[] removed = dynamicTable.removeLast();
+                tableSize -= removed[0].length() + removed[1].length() + 32;
+            }
+        }
+
+        // Integer dengan prefix N bit (RFC 7541 bagian 5.1)
+        private int readInteger(int prefixBits) throws CompressionException {
+            int mask = (1 << prefixBits) - 1;
+            int value = block[position++] & mask;
+            if (value < mask) {
+                return value;
+            }
+            int shift = 0;
+            while (true) {
+                if (position >= end) {
+                    throw new CompressionException("Integer terpotong");
+                }
+                int b = block[position++] & 0xff;
+                if (shift > 21) {
+                    throw new CompressionException("Integer terlalu besar");
+                }
+                value += (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+            }
+        }
+
+        // String literal, Huffman jika bit tertinggi panjangnya disetel (RFC 7541 bagian 5.2)
+        private String readString() throws CompressionException {
+            if (position >= end) {
+                throw new CompressionException("String literal terpotong");
+            }
+            boolean huffman = (block[position] & 0x80) != 0;
+            int length = readInteger(7);
+            if (length > end - position) {
+                throw new CompressionException("String literal terpotong");
+            }
+            int start = position;
+            position += length;
+            if (!huffman) {
+                return new String(block, start, length, StandardCharsets.ISO_8859_1);
+            }
+            return huffmanDecode(block, start, length);
+        }
+    }
+
+    static String huffmanDecode(byte[] data, int offset, int length) throws CompressionException {
+        StringBuilder text = new StringBuilder(length * 8 / 5);
+        int node = 0;
+        int pendingBits = 0; // bit sejak simbol terakhir
+        boolean pendingAllOnes = true;
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xff;
+            for (int bit = 7; bit >= 0; bit--) {
+                int one = (b >>> bit) & 1;
+                int next = HUFFMAN_TREE[node * 2 + one];
+                if (next == 0) {
+                    throw new CompressionException("Kode Huffman tidak valid"); // termasuk simbol EOS
+                }
+                if (next < 0) {
+                    text.append((char) (-next - 1));
+                    node = 0;
+                    pendingBits = 0;
+                    pendingAllOnes = true;
+                } else {
+                    node = next;
+                    pendingBits++;
+                    pendingAllOnes &= one == 1;
+                }
+            }
+        }
+        // Sisa bit hanya boleh padding: kurang dari 8 bit dan semuanya 1 (awalan EOS)
+        if (pendingBits > 7 || !pendingAllOnes) {
+            throw new CompressionException("Padding Huffman tidak valid");
+        }
+        return text.toString();
+    }
+
+    // Encoder untuk header respons: :status dari tabel statis jika ada, sisanya literal tanpa indexing
+    static byte[] encode(int status, List<String[]> headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + headers.size() * 32);
+        String statusText = Integer.toString(status);
+        int statusIndex = -1;
+        for (int i = 7; i < 14; i++) {
+            if (STATIC_TABLE[i][1].equals(statusText)) {
+                statusIndex = i + 1;
+            }
+        }
+        if (statusIndex > 0) {
+            writeInteger(out, 0x80, 7, statusIndex);
+        } else {
+            writeInteger(out, 0x00, 4, 8);
+            writeString(out, statusText);
+        }
+        for (String[] header : headers) {
+            Integer nameIndex = STATIC_NAME_INDEX.get(header[0]);
+            if (nameIndex != null) {
+                writeInteger(out, 0x00, 4, nameIndex);
+            } else {
+                writeInteger(out, 0x00, 4, 0);
+                writeString(out, header[0]);
+            }
+            writeString(out, header[1]);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeInteger(ByteArrayOutputStream out, int pattern, int prefixBits, int value) {
+        int mask = (1 << prefixBits) - 1;
+        if (value < mask) {
+            out.write(pattern | value);
+            return;
+        }
+        out.write(pattern | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    // String ditulis dengan Huffman jika hasilnya lebih pendek
+    private static void writeString(ByteArrayOutputStream out, String text) {
+        long bits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            bits += HUFFMAN_LENGTHS[text.charAt(i) & 0xff];
+        }
+        int huffmanLength = (int) ((bits + 7) / 8);
+        if (huffmanLength >= text.length()) {
+            writeInteger(out, 0x00, 7, text.length());
+            for (int i = 0; i < text.length(); i++) {
+                out.write(text.charAt(i));
+            }
+            return;
+        }
+        writeInteger(out, 0x80, 7, huffmanLength);
+        long current = 0;
+        int currentBits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            int symbol = text.charAt(i) & 0xff;
+            current = (current << HUFFMAN_LENGTHS[symbol]) | (HUFFMAN_CODES[symbol] & 0xffffffffL);
+            currentBits += HUFFMAN_LENGTHS[symbol];
+            while (currentBits >= 8) {
+                currentBits -= 8;
+                out.write((int) (current >>> currentBits));
+            }
+        }
+        if (currentBits > 0) {
+            // Sisa byte terakhir diisi bit 1 (awalan EOS)
+            out.write((int) ((current << (8 - currentBits)) | (0xff >>> currentBits)));
+        }
+    }
+}
@@ -0,0 +1,1002 @@
+package webserver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Satu koneksi HTTP/2 cleartext (h2c, RFC 9113) di atas socket blocking. Thread koneksi membaca frame,
+// setiap stream dilayani virtual thread sendiri lewat HttpRequestHandler yang sama dengan HTTP/1.1:
+// header HPACK diterjemahkan menjadi head HTTP/1.1 untuk HttpRequestParser, dan respons HTTP/1.1 dari
+// handler diubah kembali menjadi frame HEADERS dan DATA yang mengikuti flow control klien.
+class Http2Connection {
+    // Preface yang dikirim klien sebelum frame pertama (prior knowledge atau setelah Upgrade)
+    static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    // Tipe frame
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+
+    // Flag frame
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    // Kode error untuk RST_STREAM dan GOAWAY
+    private static final int NO_ERROR = 0x0;
+    private static final int PROTOCOL_ERROR = 0x1;
+    private static final int INTERNAL_ERROR = 0x2;
+    private static final int FLOW_CONTROL_ERROR = 0x3;
+    private static final int STREAM_CLOSED = 0x5;
+    private static final int FRAME_SIZE_ERROR = 0x6;
+    private static final int REFUSED_STREAM = 0x7;
+    private static final int COMPRESSION_ERROR = 0x9;
+
+    // Parameter SETTINGS
+    private static final int SETTINGS_ENABLE_PUSH = 0x2;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+    private static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int MAX_FRAME_SIZE = 16384; // frame terbesar yang kita terima
+    private static final int MAX_CONCURRENT_STREAMS = 100;
+    private static final int HEADER_TABLE_SIZE = 4096;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    // Header HTTP/1.1 yang hanya berlaku untuk satu koneksi dan tidak boleh ada di HTTP/2
+    private static final List<String> CONNECTION_HEADERS = List.of(
+            "connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade");
+
+    // Error yang menutup seluruh koneksi dengan GOAWAY
+    private static final class ConnectionError extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int code;
+
+        ConnectionError(int code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    // Status satu stream; jendela kirimnya dijaga flowLock
+    private static final class Stream {
+        private final int id;
+        private long sendWindow;
+        private volatile boolean reset; // dibatalkan klien atau koneksinya sudah ditutup
+        private volatile boolean endStreamReceived;
+
+        Stream(int id, long sendWindow) {
+            this.id = id;
+            this.sendWindow = sendWindow;
+        }
+    }
+
+    private final WebServer webServer;
+    private final Socket socket;
+    private final String clientAddress;
+    private final HttpRequestParser firstRequest; // buffer HTTP/1.1 yang sudah terbaca, dan request Upgrade jika ada
+    private final DataInputStream in;
+    private final OutputStream out;
+    // Satu frame (atau HEADERS dengan CONTINUATION-nya) ditulis utuh per giliran
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ReentrantLock flowLock = new ReentrantLock();
+    private final Condition windowOpened = flowLock.newCondition();
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final Hpack.Decoder decoder = new Hpack.Decoder(HEADER_TABLE_SIZE);
+    private final byte[] frame = new byte[MAX_FRAME_SIZE];
+    private long connectionSendWindow = DEFAULT_WINDOW_SIZE;
+    private int peerInitialWindow = DEFAULT_WINDOW_SIZE;
+    private volatile int peerMaxFrameSize = MAX_FRAME_SIZE;
+    private volatile int lastStreamId;
+    private volatile boolean closed;
+
+    // Header block yang sedang dikumpulkan dari HEADERS dan CONTINUATION
+    private ByteArrayOutputStream headerBlock;
+    private int headerBlockStream;
+    private boolean headerBlockEndStream;
+
+    // Byte yang masih ada di parser HTTP/1.1 dibaca lebih dulu sebelum input socket
+    Http2Connection(WebServer webServer, Socket socket, String clientAddress, HttpRequestParser firstRequest,
+                    InputStream socketIn, OutputStream out) {
+        this.webServer = webServer;
+        this.socket = socket;
+        this.clientAddress = clientAddress;
+        this.firstRequest = firstRequest;
+        InputStream buffered = new ByteArrayInputStream(firstRequest.takeRemainingInput());
+        this.in = new DataInputStream(new BufferedInputStream(new SequenceInputStream(buffered, socketIn),
+                MAX_FRAME_SIZE + 9));
+        this.out = out;
+    }
+
+    // Request HTTP/1.1 yang meminta pindah ke h2c: GET tanpa body dengan Upgrade: h2c dan satu HTTP2-Settings valid
+    static boolean isUpgradeRequest(HttpRequestParser request) {
+        if (!"GET".equals(request.method()) || !"HTTP/1.1".equals(request.version())
+                || request.hasHeader("content-length") || request.hasHeader("transfer-encoding")) {
+            return false;
+        }
+        String upgrade = request.header("upgrade");
+        String connection = request.header("connection");
+        String settings = request.header("http2-settings");
+        return upgrade != null && connection != null && settings != null
+                && hasToken(upgrade, "h2c") && hasToken(connection, "upgrade") && hasToken(connection, "http2-settings")
+                && decodeSettingsHeader(settings) != null;
+    }
+
+    private static boolean hasToken(String value, String token) {
+        for (String part : value.split(",")) {
+            if (part.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Isi HTTP2-Settings adalah payload frame SETTINGS dalam base64url tanpa padding; null jika tidak valid
+    private static byte[] decodeSettingsHeader(String value) {
+        if (value.indexOf(',') >= 0) {
+            return null; // header yang muncul lebih dari sekali sudah digabung parser
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(value.trim());
+            return payload.length % 6 == 0 ? payload : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // Melayani koneksi sampai klien menutupnya, idle melewati batas keep-alive, atau terjadi error protokol.
+    // Socket ditutup oleh pemanggil.
+    void serve(boolean upgrade) throws IOException {
+        boolean drain = false; // menunggu stream yang masih berjalan sebelum koneksi ditutup
+        try {
+            if (upgrade) {
+                applySettings(decodeSettingsHeader(firstRequest.header("http2-settings")), 0, -1);
+                writeLock.lock();
+                try {
+                    out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                } finally {
+                    writeLock.unlock();
+                }
+            }
+            writeSettings();
+            if (upgrade) {
+                // Request Upgrade menjadi stream 1 yang dari sisi klien sudah selesai (half-closed)
+                Stream stream = openStream(1);
+                stream.endStreamReceived = true;
+                lastStreamId = 1;
+                startStream(stream, null, firstRequest);
+            }
+            readPreface();
+            drain = readFrames();
+        } catch (ConnectionError e) {
+            try {
+                goAway(e.code, e.getMessage());
+            } catch (IOException ignored) {
+                // Klien sudah tidak bisa ditulisi, koneksi tetap ditutup
+            }
+        } catch (SocketTimeoutException e) {
+            // Frame tidak selesai dikirim dalam batas waktu baca
+            webServer.getAdmission().record(AdmissionController.Rejection.READ_TIMEOUT);
+        } catch (EOFException e) {
+            // Klien menutup koneksi
+        } finally {
+            if (drain) {
+                awaitStreams(webServer.getWriteTimeout());
+            }
+            flowLock.lock();
+            try {
+                closed = true;
+                for (Stream stream : streams.values()) {
+                    stream.reset = true;
+                }
+                windowOpened.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+    }
+
+    // Preface klien harus datang dalam batas waktu baca
+    private void readPreface() throws IOException {
+        socket.setSoTimeout(webServer.getReadTimeout());
+        byte[] preface = new byte[PREFACE.length];
+        in.readFully(preface);
+        for (int i = 0; i < preface.length; i++) {
+            if (preface[i] != PREFACE[i]) {
+                throw new ConnectionError(PROTOCOL_ERROR, "Preface HTTP/2 tidak valid");
+            }
+        }
+    }
+
+    // Membaca frame sampai koneksi selesai; true jika stream yang masih berjalan perlu ditunggu dulu
+    private boolean readFrames() throws IOException {
+        byte[] header = new byte[9];
+        while (true) {
+            // Di antara frame berlaku batas idle keep-alive, selama ada stream aktif koneksi tetap dibuka
+            socket.setSoTimeout(webServer.getKeepAliveTimeout());
+            int first;
+            try {
+                first = in.read();
+            } catch (SocketTimeoutException e) {
+                if (!streams.isEmpty()) {
+                    continue;
+                }
+                goAway(NO_ERROR, "Koneksi idle");
+                return false;
+            }
+            if (first < 0) {
+                return false;
+            }
+            socket.setSoTimeout(webServer.getReadTimeout());
+            header[0] = (byte) first;
+            in.readFully(header, 1, 8);
+            int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+            int type = header[3] & 0xff;
+            int flags = header[4] & 0xff;
+            int streamId = readInt(header, 5) & 0x7fffffff;
+            if (length > MAX_FRAME_SIZE) {
+                throw new ConnectionError(FRAME_SIZE_ERROR, "Frame lebih besar dari SETTINGS_MAX_FRAME_SIZE");
+            }
+            in.readFully(frame, 0, length);
+            if (headerBlock != null && (type != CONTINUATION || streamId != headerBlockStream)) {
+                throw new ConnectionError(PROTOCOL_ERROR, "Header block terpotong frame lain");
+            }
+            switch (type) {
+                case DATA:
+                    onData(streamId, flags, length);
+                    break;
+                case HEADERS:
+                    onHeaders(streamId, flags, length);
+                    break;
+                case PRIORITY:
+                    if (streamId == 0) {
+                        throw new ConnectionError(PROTOCOL_ERROR, "PRIORITY pada stream 0");
+                    }
+                    if (length != 5) {
+                        resetStream(streamId, FRAME_SIZE_ERROR);
+                    }
+                    break; // prioritas diabaikan, stream dilayani sesuai kedatangan
+                case RST_STREAM:
+                    onResetStream(streamId, length);
+                    break;
+                case SETTINGS:
+                    onSettings(streamId, flags, length);
+                    break;
+                case PUSH_PROMISE:
+                    throw new ConnectionError(PROTOCOL_ERROR, "Klien tidak boleh mengirim PUSH_PROMISE");
+                case PING:
+                    onPing(streamId, flags, length);
+                    break;
+                case GOAWAY:
+                    if (streamId != 0) {
+                        throw new ConnectionError(PROTOCOL_ERROR, "GOAWAY pada stream selain 0");
+                    }
+                    return true; // klien berhenti membuat stream, yang sedang berjalan diselesaikan dulu
+                case WINDOW_UPDATE:
+                    onWindowUpdate(streamId, length);
+                    break;
+                case CONTINUATION:
+                    onContinuation(streamId, flags, length);
+                    break;
+                default:
+                    break; // tipe frame yang tidak dikenal wajib diabaikan
+            }
+        }
+    }
+
+    private void onData(int streamId, int flags, int length) throws IOException {
+        if (streamId == 0) {
+            throw new ConnectionError(PROTOCOL_ERROR, "DATA pada stream 0");
+        }
+        if (streamId > lastStreamId) {
+            throw new ConnectionError(PROTOCOL_ERROR, "DATA pada stream yang belum dibuka");
+        }
+        if ((flags & FLAG_PADDED) != 0 && (length == 0 || (frame[0] & 0xff) >= length)) {
+            throw new ConnectionError(PROTOCOL_ERROR, "Padding DATA tidak valid");
+        }
+        // Body request tidak dipakai handler (hanya GET yang dilayani), jadi jendela terima langsung dikembalikan
+        Stream stream = streams.get(streamId);
+        if (length > 0) {
+            writeWindowUpdate(0, length);
+        }
+        if (stream == null) {
+            return; // respons stream ini sudah selesai, sisa body-nya dibuang
+        }
+        if (stream.endStreamReceived) {
+            resetStream(streamId, STREAM_CLOSED);
+            return;
+        }
+        if ((flags & FLAG_END_STREAM) != 0) {
+            stream.endStreamReceived = true;
+        } else if (length > 0) {
+            writeWindowUpdate(streamId, length);
+        }
+    }
+
+    private void onHeaders(int streamId, int flags, int length) throws IOException {
+        if (streamId == 0 || (streamId & 1) == 0) {
+            throw new ConnectionError(PROTOCOL_ERROR, "HEADERS pada stream " + streamId);
+        }
+        int offset = 0;
+        int end = length;
+        if ((flags & FLAG_PADDED) != 0) {
+            if (length == 0) {
+                throw new ConnectionError(PROTOCOL_ERROR, "Padding HEADERS tidak valid");
+            }
+            end -= frame[0] & 0xff;
+            offset = 1;
+        }
+        if ((flags & FLAG_PRIORITY) != 0) {
+            if ((readInt(frame, offset) & 0x7fffffff) == streamId) {
+                throw new ConnectionError(PROTOCOL_ERROR, "Stream bergantung pada dirinya sendiri");
+            }
+            offset += 5;
+        }
+        if (offset > end) {
+            throw new ConnectionError(PROTOCOL_ERROR, "Padding HEADERS tidak valid");
+        }
+        headerBlock = new ByteArrayOutputStream(Math.max(64, end - offset));
+        headerBlock.write(frame, offset, end - offset);
+        headerBlockStream = streamId;
+        headerBlockEndStream = (flags & FLAG_END_STREAM) != 0;
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    private void onContinuation(int streamId, int flags, int length) throws IOException {
+        if (headerBlock == null) {
+            throw new ConnectionError(PROTOCOL_ERROR, "CONTINUATION tanpa HEADERS");
+        }
+        headerBlock.write(frame, 0, length);
+        // Header block terkompresi yang lebih besar dari batas header tidak mungkin valid
+        if (headerBlock.size() > 2 * (webServer.getMaxRequestLineLength() + webServer.getMaxHeaderBytes())) {
+            throw new ConnectionError(PROTOCOL_ERROR, "Header block terlalu besar");
+        }
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            onHeaderBlock();
+        }
+    }
+
+    // Header block lengkap: stream baru, atau trailer dari stream yang sudah berjalan
+    private void onHeaderBlock() throws IOException {
+        byte[] block = headerBlock.toByteArray();
+        int streamId = headerBlockStream;
+        boolean endStream = headerBlockEndStream;
+        headerBlock = null;
+        List<String[]> headers;
+        try {
+            // Tabel dinamis harus tetap diperbarui, bahkan untuk stream yang akan ditolak
+            headers = decoder.decode(block, 0, block.length,
+                    webServer.getMaxRequestLineLength() + webServer.getMaxHeaderBytes());
+        } catch (Hpack.CompressionException e) {
+            throw new ConnectionError(COMPRESSION_ERROR, e.getMessage());
+        }
+        if (streamId <= lastStreamId) {
+            Stream stream = streams.get(streamId);
+            if (stream == null || stream.endStreamReceived || !endStream) {
+                throw new ConnectionError(STREAM_CLOSED, "HEADERS pada stream yang sudah ditutup");
+            }
+            stream.endStreamReceived = true; // trailer diabaikan
+            return;
+        }
+        lastStreamId = streamId;
+        if (streams.size() >= MAX_CONCURRENT_STREAMS) {
+            resetStream(streamId, REFUSED_STREAM);
+            return;
+        }
+        Stream stream = openStream(streamId);
+        stream.endStreamReceived = endStream;
+        startStream(stream, headers, null);
+    }
+
+    private void onResetStream(int streamId, int length) throws IOException {
+        if (streamId == 0) {
+            throw new ConnectionError(PROTOCOL_ERROR, "RST_STREAM pada stream 0");
+        }
+        if (length != 4) {
+            throw new ConnectionError(FRAME_SIZE_ERROR, "Ukuran RST_STREAM salah");
+        }
+        if (streamId > lastStreamId) {
+            throw new ConnectionError(PROTOCOL_ERROR, "RST_STREAM pada stream yang belum dibuka");
+        }
+        Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            flowLock.lock();
+            try {
+                stream.reset = true;
+                windowOpened.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+    }
+
+    private void onSettings(int streamId, int flags, int length) throws IOException {
+        if (streamId != 0) {
+            throw new ConnectionError(PROTOCOL_ERROR, "SETTINGS pada stream selain 0");
+        }
+        if ((flags & FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw new ConnectionError(FRAME_SIZE_ERROR, "SETTINGS ACK berisi payload");
+            }
+            return;
+        }
+        if (length % 6 != 0) {
+            throw new ConnectionError(FRAME_SIZE_ERROR, "Ukuran SETTINGS salah");
+        }
+        applySettings(frame, 0, length);
+        writeFrame(SETTINGS, FLAG_ACK, 0, frame, 0, 0);
+    }
+
+    // Menerapkan pasangan (id 16 bit, nilai 32 bit) dari klien; length -1 berarti seluruh array
+    private void applySettings(byte[] payload, int offset, int length) throws ConnectionError {
+        int end = length < 0 ? payload.length : offset + length;
+        for (int i = offset; i < end; i += 6) {
+            int id = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+            long value = readInt(payload, i + 2) & 0xffffffffL;
+            switch (id) {
+                case SETTINGS_ENABLE_PUSH:
+                    if (value > 1) {
+                        throw new ConnectionError(PROTOCOL_ERROR, "SETTINGS_ENABLE_PUSH tidak valid");
+                    }
+                    break; // server ini tidak pernah melakukan push
+                case SETTINGS_INITIAL_WINDOW_SIZE:
+                    if (value > MAX_WINDOW_SIZE) {
+                        throw new ConnectionError(FLOW_CONTROL_ERROR, "SETTINGS_INITIAL_WINDOW_SIZE terlalu besar");
+                    }
+                    changeInitialWindow((int) value);
+                    break;
+                case SETTINGS_MAX_FRAME_SIZE:
+                    if (value < MAX_FRAME_SIZE || value > 16777215) {
+                        throw new ConnectionError(PROTOCOL_ERROR, "SETTINGS_MAX_FRAME_SIZE tidak valid");
+                    }
+                    peerMaxFrameSize = (int) value;
+                    break;
+                default:
+                    // HEADER_TABLE_SIZE tidak berpengaruh karena encoder tidak memakai tabel dinamis;
+                    // MAX_CONCURRENT_STREAMS hanya membatasi stream yang dibuka server
+                    break;
+            }
+        }
+    }
+
+    // Perubahan INITIAL_WINDOW_SIZE menggeser jendela semua stream yang terbuka (boleh jadi negatif)
+    private void changeInitialWindow(int value) throws ConnectionError {
+        flowLock.lock();
+        try {
+            int delta = value - peerInitialWindow;
+            peerInitialWindow = value;
+            for (Stream stream : streams.values()) {
+                stream.sendWindow += delta;
+                if (stream.sendWindow > MAX_WINDOW_SIZE) {
+                    throw new ConnectionError(FLOW_CONTROL_ERROR, "Jendela stream melebihi 2^31-1");
+                }
+            }
+            windowOpened.signalAll();
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    private void onPing(int streamId, int flags, int length) throws IOException {
+        if (streamId != 0) {
+            throw new ConnectionError(PROTOCOL_ERROR, "PING pada stream selain 0");
+        }
+        if (length != 8) {
+            throw new ConnectionError(FRAME_SIZE_ERROR, "Ukuran PING salah");
+        }
+        if ((flags & FLAG_ACK) == 0) {
+            writeFrame(PING, FLAG_ACK, 0, frame, 0, 8);
+        }
+    }
+
+    private void onWindowUpdate(int streamId, int length) throws IOException {
+        if (length != 4) {
+            throw new ConnectionError(FRAME_SIZE_ERROR, "Ukuran WINDOW_UPDATE salah");
+        }
+        int increment = readInt(frame, 0) & 0x7fffffff;
+        if (increment == 0) {
+            if (streamId == 0) {
+                throw new ConnectionError(PROTOCOL_ERROR, "WINDOW_UPDATE bernilai 0");
+            }
+            resetStream(streamId, PROTOCOL_ERROR);
+            return;
+        }
+        boolean overflow = false;
+        flowLock.lock();
+        try {
+            if (streamId == 0) {
+                connectionSendWindow += increment;
+                if (connectionSendWindow > MAX_WINDOW_SIZE) {
+                    throw new ConnectionError(FLOW_CONTROL_ERROR, "Jendela koneksi melebihi 2^31-1");
+                }
+            } else {
+                Stream stream = streams.get(streamId);
+                if (stream != null) {
+                    stream.sendWindow += increment;
+                    overflow = stream.sendWindow > MAX_WINDOW_SIZE;
+                }
+            }
+            windowOpened.signalAll();
+        } finally {
+            flowLock.unlock();
+        }
+        if (overflow) {
+            resetStream(streamId, FLOW_CONTROL_ERROR);
+        }
+    }
+
+    private Stream openStream(int streamId) {
+        flowLock.lock();
+        try {
+            Stream stream = new Stream(streamId, peerInitialWindow);
+            streams.put(streamId, stream);
+            return stream;
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    // Setiap stream dijawab di virtual thread sendiri sehingga file besar tidak menahan stream lain
+    private void startStream(Stream stream, List<String[]> headers, HttpRequestParser upgradeRequest) {
+        Thread.ofVirtual().name("h2-stream-" + stream.id).start(() -> serveStream(stream, headers, upgradeRequest));
+    }
+
+    private void serveStream(Stream stream, List<String[]> headers, HttpRequestParser upgradeRequest) {
+        HttpRequestHandler handler = new HttpRequestHandler(clientAddress, webServer);
+        ResponseSink sink = new ResponseSink(stream);
+        ResponseOutputStream response = new ResponseOutputStream(sink, null);
+        try {
+            if (upgradeRequest != null) {
+                handler.handleRequest(upgradeRequest, response);
+            } else {
+                HttpRequestParser request = new HttpRequestParser(webServer.getMaxRequestLineLength(),
+                        webServer.getMaxHeaderBytes());
+                try {
+                    byte[] head = toHttp1Head(headers);
+                    request.feed(head, 0, head.length);
+                    if (!request.parse()) {
+                        throw HttpParseException.badRequest("Header HTTP/2 tidak lengkap");
+                    }
+                    handler.handleRequest(request, response);
+                } catch (HttpParseException e) {
+                    handler.rejectRequest(e, response);
+                }
+            }
+            sink.finish();
+            if (!stream.endStreamReceived) {
+                // Respons sudah lengkap, klien tidak perlu mengirim sisa body-nya
+                resetStream(stream.id, NO_ERROR);
+            }
+        } catch (IOException e) {
+            if (!stream.reset && !closed) {
+                try {
+                    resetStream(stream.id, INTERNAL_ERROR);
+                } catch (IOException ignored) {
+                    // Koneksinya sendiri sudah rusak
+                }
+            }
+        } finally {
+            streams.remove(stream.id);
+            flowLock.lock();
+            try {
+                windowOpened.signalAll(); // awaitStreams menunggu di kondisi yang sama
+            } finally {
+                flowLock.unlock();
+            }
+        }
+    }
+
+    // Menyusun head HTTP/1.1 dari header HTTP/2 supaya bisa diurai HttpRequestParser seperti request biasa.
+    // Nilai dengan CR, LF, atau NUL ditolak agar tidak bisa menyisipkan header baru.
+    private byte[] toHttp1Head(List<String[]> headers) throws HttpParseException {
+        if (headers == Hpack.TOO_LARGE) {
+            throw new HttpParseException(431, "Request Header Fields Too Large", "Header HTTP/2 terlalu besar");
+        }
+        String method = null;
+        String scheme = null;
+        String path = null;
+        String authority = null;
+        boolean regularSeen = false;
+        StringBuilder fields = new StringBuilder(256);
+        StringBuilder cookie = null;
+        for (String[] header : headers) {
+            String name = header[0];
+            String value = header[1];
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\r' || c == '\n' || c == 0) {
+                    throw HttpParseException.badRequest("Karakter tidak valid di header HTTP/2");
+                }
+            }
+            if (name.startsWith(":")) {
+                if (regularSeen) {
+                    throw HttpParseException.badRequest("Pseudo-header setelah header biasa");
+                }
+                switch (name) {
+                    case ":method":
+                        method = single(method, value);
+                        break;
+                    case ":scheme":
+                        scheme = single(scheme, value);
+                        break;
+                    case ":path":
+                        path = single(path, value);
+                        break;
+                    case ":authority":
+                        authority = single(authority, value);
+                        break;
+                    default:
+                        throw HttpParseException.badRequest("Pseudo-header tidak dikenal: " + name);
+                }
+                continue;
+            }
+            regularSeen = true;
+            if (name.isEmpty() || !isLowerCaseToken(name) || CONNECTION_HEADERS.contains(name)
+                    || (name.equals("te") && !value.equalsIgnoreCase("trailers"))) {
+                throw HttpParseException.badRequest("Header HTTP/2 tidak valid: " + name);
+            }
+            if (name.equals("cookie")) {
+                // Cookie boleh dipecah menjadi beberapa field di HTTP/2 (RFC 9113 bagian 8.2.3)
+                cookie = cookie == null ? new StringBuilder(value) : cookie.append("; ").append(value);
+                continue;
+            }
+            if (name.equals("host") && authority != null) {
+                continue; // :authority diutamakan
+            }
+            fields.append(name).append(": ").append(value).append("\r\n");
+        }
+        if (method == null || scheme == null || path == null || path.isEmpty()) {
+            throw HttpParseException.badRequest("Pseudo-header HTTP/2 wajib tidak lengkap");
+        }
+        StringBuilder head = new StringBuilder(fields.length() + path.length() + 64);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+        if (authority != null) {
+            head.append("host: ").append(authority).append("\r\n");
+        }
+        head.append(fields);
+        if (cookie != null) {
+            head.append("cookie: ").append(cookie).append("\r\n");
+        }
+        head.append("\r\n");
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static String single(String current, String value) throws HttpParseException {
+        if (current != null) {
+            throw HttpParseException.badRequest("Pseudo-header ganda");
+        }
+        return value;
+    }
+
+    private static boolean isLowerCaseToken(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || "!#$%&'*+-.^_`|~".indexOf(c) >= 0;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Mengambil jendela kirim untuk paling banyak wanted byte, menunggu WINDOW_UPDATE jika kosong.
+    // Klien yang tidak membuka jendelanya dalam batas waktu tulis dianggap macet.
+    private int acquireWindow(Stream stream, int wanted) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(webServer.getWriteTimeout());
+        flowLock.lock();
+        try {
+            while (true) {
+                if (stream.reset || closed) {
+                    throw new IOException("Stream " + stream.id + " sudah ditutup");
+                }
+                long available = Math.min(connectionSendWindow, stream.sendWindow);
+                if (available > 0) {
+                    int n = (int) Math.min(wanted, available);
+                    connectionSendWindow -= n;
+                    stream.sendWindow -= n;
+                    return n;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    webServer.getAdmission().record(AdmissionController.Rejection.WRITE_TIMEOUT);
+                    throw new IOException("Jendela flow control stream " + stream.id + " tidak dibuka klien");
+                }
+                windowOpened.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            flowLock.unlock();
+        }
+    }
+
+    // Menunggu stream yang masih berjalan selesai, paling lama timeoutMillis
+    private void awaitStreams(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        flowLock.lock();
+        try {
+            long remaining;
+            while (!streams.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                windowOpened.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flowLock.unlock();
+        }
+        try {
+            goAway(NO_ERROR, "");
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void writeSettings() throws IOException {
+        int maxHeaderList = webServer.getMaxRequestLineLength() + webServer.getMaxHeaderBytes();
+        byte[] payload = new byte[12];
+        putSetting(payload, 0, SETTINGS_MAX_CONCURRENT_STREAMS, MAX_CONCURRENT_STREAMS);
+        putSetting(payload, 6, SETTINGS_MAX_HEADER_LIST_SIZE, maxHeaderList);
+        writeFrame(SETTINGS, 0, 0, payload, 0, payload.length);
+    }
+
+    private static void putSetting(byte[] payload, int offset, int id, int value) {
+        payload[offset] = (byte) (id >>> 8);
+        payload[offset + 1] = (byte) id;
+        putInt(payload, offset + 2, value);
+    }
+
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        putInt(payload, 0, increment);
+        writeFrame(WINDOW_UPDATE, 0, streamId, payload, 0, 4);
+    }
+
+    private void resetStream(int streamId, int code) throws IOException {
+        Stream stream = streams.remove(streamId);
+        if (stream != null) {
+            flowLock.lock();
+            try {
+                stream.reset = true;
+                windowOpened.signalAll();
+            } finally {
+                flowLock.unlock();
+            }
+        }
+        byte[] payload = new byte[4];
+        putInt(payload, 0, code);
+        writeFrame(RST_STREAM, 0, streamId, payload, 0, 4);
+    }
+
+    private void goAway(int code, String message) throws IOException {
+        byte[] debug = message.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[8 + debug.length];
+        putInt(payload, 0, lastStreamId);
+        putInt(payload, 4, code);
+        System.arraycopy(debug, 0, payload, 8, debug.length);
+        writeFrame(GOAWAY, 0, 0, payload, 0, payload.length);
+    }
+
+    private void writeFrame(int type, int flags, int streamId, byte[] payload, int offset, int length)
+            throws IOException {
+        writeLock.lock();
+        try {
+            writeFrameHeader(type, flags, streamId, length);
+            out.write(payload, offset, length);
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeFrameHeader(int type, int flags, int streamId, int length) throws IOException {
+        byte[] header = new byte[9];
+        header[0] = (byte) (length >>> 16);
+        header[1] = (byte) (length >>> 8);
+        header[2] = (byte) length;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        putInt(header, 5, streamId);
+        out.write(header);
+    }
+
+    // Header block respons dikirim utuh: HEADERS lalu CONTINUATION jika lebih besar dari frame klien
+    private void writeHeaders(int streamId, byte[] block, boolean endStream) throws IOException {
+        int maxFrame = peerMaxFrameSize;
+        writeLock.lock();
+        try {
+            int offset = 0;
+            boolean firstFrame = true;
+            do {
+                int length = Math.min(maxFrame, block.length - offset);
+                boolean last = offset + length == block.length;
+                int flags = (last ? FLAG_END_HEADERS : 0) | (firstFrame && endStream ? FLAG_END_STREAM : 0);
+                writeFrameHeader(firstFrame ? HEADERS : CONTINUATION, flags, streamId, length);
+                out.write(block, offset, length);
+                offset += length;
+                firstFrame = false;
+            } while (offset < block.length);
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    private static void putInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    // Menerima respons HTTP/1.1 dari handler: head diubah menjadi frame HEADERS, body dipotong menjadi
+    // frame DATA sesuai jendela flow control. Content-Length dari handler menentukan kapan END_STREAM dikirim.
+    private final class ResponseSink extends OutputStream {
+        private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+        private final Stream stream;
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream(256);
+        private final byte[] pending = new byte[MAX_FRAME_SIZE];
+        private int pendingLength;
+        private boolean headersSent;
+        private long contentLength = -1; // -1 jika handler tidak mengirim Content-Length
+        private long bodyReceived;
+        private boolean ended;
+
+        ResponseSink(Stream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (ended) {
+                return; // byte di luar Content-Length tidak punya tempat di stream ini
+            }
+            if (!headersSent) {
+                head.write(b, off, len);
+                int headEnd = findHeadEnd();
+                if (headEnd < 0) {
+                    if (head.size() > MAX_HEAD_SIZE) {
+                        throw new IOException("Header respons terlalu besar");
+                    }
+                    return;
+                }
+                byte[] bytes = head.toByteArray();
+                sendHeaders(new String(bytes, 0, headEnd, StandardCharsets.ISO_8859_1));
+                writeBody(bytes, headEnd + 4, bytes.length - headEnd - 4);
+                return;
+            }
+            writeBody(b, off, len);
+        }
+
+        private int findHeadEnd() {
+            byte[] bytes = head.toByteArray();
+            for (int i = 0; i + 3 < bytes.length; i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n' && bytes[i + 2] == '\r' && bytes[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Baris status dan header HTTP/1.1 (tanpa baris kosong penutup) menjadi HEADERS
+        private void sendHeaders(String text) throws IOException {
+            headersSent = true;
+            String[] lines = text.split("\r\n");
+            int status;
+            try {
+                status = Integer.parseInt(lines[0].substring(9, 12));
+            } catch (RuntimeException e) {
+                throw new IOException("Baris status respons tidak valid: " + lines[0]);
+            }
+            List<String[]> headers = new ArrayList<>(lines.length);
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = lines[i].substring(colon + 1).trim();
+                if (CONNECTION_HEADERS.contains(name)) {
+                    continue;
+                }
+                if (name.equals("content-length")) {
+                    contentLength = Long.parseLong(value);
+                }
+                headers.add(new String[] {name, value});
+            }
+            if (status == 204 || status == 304 || status < 200) {
+                contentLength = 0;
+            }
+            boolean endStream = contentLength == 0;
+            writeHeaders(stream.id, Hpack.encode(status, headers), endStream);
+            ended = endStream;
+        }
+
+        private void writeBody(byte[] b, int off, int len) throws IOException {
+            if (contentLength >= 0) {
+                len = (int) Math.min(len, contentLength - bodyReceived);
+            }
+            while (len > 0) {
+                int n = Math.min(len, pending.length - pendingLength);
+                System.arraycopy(b, off, pending, pendingLength, n);
+                pendingLength += n;
+                bodyReceived += n;
+                off += n;
+                len -= n;
+                boolean complete = bodyReceived == contentLength;
+                if (pendingLength == pending.length || complete) {
+                    sendData(complete);
+                }
+            }
+        }
+
+        // Mengirim isi pending sebagai satu atau beberapa frame DATA
+        private void sendData(boolean endStream) throws IOException {
+            int offset = 0;
+            while (offset < pendingLength) {
+                int n = acquireWindow(stream, Math.min(pendingLength - offset, peerMaxFrameSize));
+                boolean last = offset + n == pendingLength;
+                writeFrame(DATA, endStream && last ? FLAG_END_STREAM : 0, stream.id, pending, offset, n);
+                offset += n;
+            }
+            if (pendingLength == 0 && endStream) {
+                writeFrame(DATA, FLAG_END_STREAM, stream.id, pending, 0, 0);
+            }
+            pendingLength = 0;
+            ended = endStream;
+        }
+
+        // Dipanggil setelah handler selesai: sisa body dan END_STREAM yang belum terkirim
+        void finish() throws IOException {
+            if (!headersSent) {
+                throw new IOException("Handler tidak menulis respons");
+            }
+            if (!ended) {
+                sendData(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package webserver;
+
+// Request yang tidak bisa diurai; membawa kode status yang harus dikirim ke klien (400, 414, 431, 505)
+public class HttpParseException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final String reason;
+
+    public HttpParseException(int status, String reason, String message) {
+        super(message);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // Reason phrase untuk baris status, misalnya "Bad Request"
+    public String getReason() {
+        return reason;
+    }
+
+    static HttpParseException badRequest(String message) {
+        return new HttpParseException(400, "Bad Request", message);
+    }
+}
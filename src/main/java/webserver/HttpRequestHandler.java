@@ -1,68 +1,134 @@
 package webserver;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.Socket;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPOutputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.net.InetAddress;
 
-public class HttpRequestHandler extends Thread {
+public class HttpRequestHandler implements Runnable {
+    static final String METRICS_PATH = "/_metrics"; // endpoint metrik untuk Prometheus
+    // Pemetaan ekstensi file ke content type, juga dipakai untuk kebijakan Cache-Control
+    static final Map<String, String> CONTENT_TYPES = Map.of(
+            "html", "text/html",
+            "htm", "text/html",
+            "pdf", "application/pdf",
+            "docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+            "txt", "text/plain",
+            "jpg", "image/jpeg",
+            "jpeg", "image/jpeg",
+            "png", "image/png",
+            "gif", "image/gif",
+            "css", "text/css");
+    private static final DateTimeFormatter HTTP_DATE_FORMAT =
+            DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
     private Socket socket; // socket untuk koneksi ke klien
-    private String logsPath; // path ke direktori logs yang disetel sesuai dengan GUI nya
     private WebServer webServer;
+    private VirtualHost host; // situs yang dipilih dari header Host untuk request saat ini
     private InetAddress inetAddress;
+    private String clientAddress; // alamat IP klien untuk log
+    private boolean keepAlive; // apakah koneksi tetap dibuka setelah respons saat ini
+    private int handledRequests; // jumlah request yang sudah dilayani pada koneksi ini
+    private boolean gzipResponse; // apakah respons file saat ini dikirim dalam bentuk gzip
+    private Map<String, String> requestQuery = Map.of(); // parameter query dari request yang sedang dilayani
+    private int responseStatus; // kode status respons terakhir, untuk metrik
+    private HttpRequestParser request; // request yang sedang dilayani, null di luar handleRequest
 
     // Konstruktor untuk HttpRequestHandler
-    public HttpRequestHandler(Socket socket, String logsPath, WebServer server) {
+    public HttpRequestHandler(Socket socket, WebServer server) {
+        this(socket != null ? socket.getInetAddress().getHostAddress() : null, server);
         this.socket = socket;
-        this.logsPath = logsPath;
+    }
+
+    // Konstruktor tanpa socket, dipakai oleh engine NIO yang mengelola koneksinya sendiri
+    HttpRequestHandler(String clientAddress, WebServer server) {
+        this.clientAddress = clientAddress;
         this.webServer = server;
+        this.host = server.getDefaultHost();
     }
 
     @Override
     // Ini menangani logika atau alur dari HttpRequestHandler
     public void run() {
+        WriteTimeoutWatchdog.Guard writeGuard = webServer.getWriteWatchdog().register(socket);
         try (
-            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            DataOutputStream out = new DataOutputStream(socket.getOutputStream())
+            InputStream in = socket.getInputStream();
+            ResponseOutputStream out = new ResponseOutputStream(
+                    new BufferedOutputStream(writeGuard.wrap(socket.getOutputStream())), socket.getChannel())
         ) {
-            // Membaca input seperti GET /index.html HTTP/1.1
-            String requestLine = in.readLine(); // membaca baris permintaan dari klien
-            if (requestLine != null && !requestLine.isEmpty()) {
-                String[] tokens = requestLine.split(" "); // dipecah permintaannya jadi beberapa token
-                String method = tokens[0]; // mendapatkan metode HTTP-nya (biasanya GET)
-                String requestURL = tokens[1]; // mendapatkan URL-nya
-
-                // Memeriksa metode HTTP, jika GET maka diproses nantinya
-                if (method.equals("GET")) {
-                    serveFile(requestURL, out);
-                } else {
-                    // Metode selain GET akan direspon dengan not implemented
-                    String response = "HTTP/1.1 501 Not Implemented\r\n\r\n";
-                    out.writeBytes(response);
+            webServer.getMetrics().connectionOpened();
+            out.setWriteGuard(writeGuard);
+            HttpRequestParser request = new HttpRequestParser(webServer.getMaxRequestLineLength(),
+                    webServer.getMaxHeaderBytes());
+
+            boolean open = true;
+            if (webServer.isHttp2Enabled() && readHttp2Preface(request, in)) {
+                // Klien langsung berbicara HTTP/2 tanpa Upgrade (prior knowledge)
+                new Http2Connection(webServer, socket, clientAddress, request, in, out).serve(false);
+                open = false;
+            }
+
+            // Melayani request satu per satu selama koneksinya masih keep-alive
+            while (open) {
+                try {
+                    if (!readRequest(request, in)) {
+                        break; // klien sudah menutup koneksi
+                    }
+                    if (webServer.isHttp2Enabled() && Http2Connection.isUpgradeRequest(request)) {
+                        // Respons 101 dan semua frame berikutnya ditulis Http2Connection; request ini menjadi stream 1
+                        new Http2Connection(webServer, socket, clientAddress, request, in, out).serve(true);
+                        break;
+                    }
+                    open = handleRequest(request, out);
+                    request.next();
+                } catch (HttpParseException e) {
+                    rejectRequest(e, out);
+                    open = false;
+                }
+                // Request pipelined yang sudah ada di buffer dijawab dulu sebelum flush
+                if (!open || !request.hasBufferedInput()) {
+                    out.flush();
                 }
-                // Mencatat di log-nya
-                logAccess(requestURL, socket.getInetAddress().getHostAddress(), requestURL);
-            
             }
 
+        } catch (SocketTimeoutException e) {
+            // Koneksi idle melewati batas waktu keep-alive, langsung ditutup
         } catch (IOException e) {
-            e.printStackTrace();
+            if (!writeGuard.isTimedOut()) { // socket yang ditutup pengawas tulis tidak perlu dilaporkan
+                e.printStackTrace();
+            }
         } finally {
+            writeGuard.close();
+            webServer.getMetrics().connectionClosed();
+            webServer.getAdmission().connectionClosed(clientAddress);
             // Penutupan socket dengan aman
             try {
                 socket.close();
@@ -72,122 +138,563 @@ public class HttpRequestHandler extends Thread {
         }
     }
 
+    // Membaca dari socket sampai satu request lengkap, false jika koneksi ditutup sebelum itu.
+    // Di antara request berlaku batas idle keep-alive; begitu byte pertama datang, seluruh header
+    // harus selesai dalam batas waktu baca (melindungi dari klien yang mengirim header sangat lambat).
+    private boolean readRequest(HttpRequestParser request, InputStream in) throws IOException, HttpParseException {
+        long headStarted = 0;
+        while (!request.parse()) {
+            int timeout = webServer.getKeepAliveTimeout();
+            if (request.hasBufferedInput()) {
+                long now = System.nanoTime();
+                if (headStarted == 0) {
+                    headStarted = now;
+                }
+                long remaining = webServer.getReadTimeout() - (now - headStarted) / 1_000_000;
+                if (remaining <= 0) {
+                    throw readTimeout();
+                }
+                timeout = (int) remaining;
+            }
+            if (socket.getSoTimeout() != timeout) {
+                socket.setSoTimeout(timeout);
+            }
+            try {
+                if (request.read(in) < 0) {
+                    return false;
+                }
+            } catch (SocketTimeoutException e) {
+                if (request.hasBufferedInput()) {
+                    throw readTimeout();
+                }
+                throw e;
+            }
+        }
+        return true;
+    }
+
+    // Membaca byte pertama koneksi sampai bisa dipastikan apakah diawali preface HTTP/2.
+    // Byte yang sudah dibaca tetap di parser untuk request HTTP/1.1 jika bukan.
+    private boolean readHttp2Preface(HttpRequestParser request, InputStream in) throws IOException {
+        socket.setSoTimeout(webServer.getKeepAliveTimeout());
+        int match;
+        while ((match = request.matchPrefix(Http2Connection.PREFACE)) == 0) {
+            if (request.read(in) < 0) {
+                return false;
+            }
+        }
+        return match > 0;
+    }
+
+    private HttpParseException readTimeout() {
+        webServer.getAdmission().record(AdmissionController.Rejection.READ_TIMEOUT);
+        return new HttpParseException(408, "Request Timeout", "Header request tidak selesai dalam batas waktu baca");
+    }
+
+    // Menjawab satu request yang sudah diurai, hasilnya false jika koneksi harus ditutup setelahnya
+    boolean handleRequest(HttpRequestParser request, ResponseOutputStream out) throws IOException {
+        String method = request.method(); // mendapatkan metode HTTP-nya (biasanya GET)
+        String requestURL = request.target(); // URL apa adanya untuk log
+        long startNanos = System.nanoTime();
+        out.resetBytesWritten();
+        this.request = request;
+        // Target absolute-form mengalahkan header Host (RFC 9112 bagian 3.2.2)
+        String authority = request.authority();
+        host = webServer.resolveHost(authority != null ? authority : request.header("host"));
+
+        handledRequests++;
+        keepAlive = isKeepAliveRequested(request.version())
+                && handledRequests < webServer.getMaxKeepAliveRequests();
+
+        // Klien yang melebihi batas laju request langsung ditolak tanpa menyentuh disk
+        AdmissionController admission = webServer.getAdmission();
+        if (admission != null && !admission.tryAcquireRequest(clientAddress)) {
+            keepAlive = false;
+            String response = statusLine(429, "Too Many Requests") + "Retry-After: "
+                    + admission.retryAfterForRateLimit(clientAddress) + "\r\nContent-Length: 0\r\n"
+                    + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+        } else if (method.equals("GET")) {
+            // Path sudah di-decode parser, query string diurai terpisah
+            String path = request.path();
+            String query = request.query();
+            requestQuery = query != null ? parseQuery(query) : Map.of();
+            if (path.equals(METRICS_PATH)) {
+                serveMetrics(out);
+            } else {
+                serveFile(path, out);
+            }
+        } else {
+            // Body dari metode lain tidak dibaca, jadi koneksinya harus ditutup
+            if (request.hasHeader("content-length") || request.hasHeader("transfer-encoding")) {
+                keepAlive = false;
+            }
+            // Metode selain GET akan direspon dengan not implemented
+            String response = statusLine(501, "Not Implemented") + "Content-Length: 0\r\n" + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+        }
+        // Mencatat di log-nya dan di metrik
+        long latencyNanos = System.nanoTime() - startNanos;
+        logAccess(requestURL, clientAddress, requestURL, responseStatus, out.bytesWritten(), latencyNanos);
+        webServer.getMetrics().recordRequest(method, responseStatus, out.bytesWritten(), latencyNanos);
+        this.request = null;
+        return keepAlive;
+    }
+
+    // Apakah request ini pasti dijawab tanpa menyentuh disk: GET untuk file yang sudah ada di cache host-nya
+    // atau endpoint metrik. Engine NIO hanya menjawab request seperti ini langsung di event loop.
+    boolean isServedFromMemory(HttpRequestParser request) {
+        if (!request.method().equals("GET") || request.header("range") != null) {
+            return false;
+        }
+        String path = request.path();
+        if (path.equals(METRICS_PATH)) {
+            return true;
+        }
+        String authority = request.authority();
+        VirtualHost target = webServer.resolveHost(authority != null ? authority : request.header("host"));
+        try {
+            return target.getFileCache().contains(Paths.get(target.getWebRoot(), path));
+        } catch (InvalidPathException e) {
+            return false; // dijawab di luar event loop bersama request lain yang tidak bisa dari cache
+        }
+    }
+
+    // Menjawab request yang gagal diurai atau terlalu lambat dikirim (400, 408, 414, 431, 505). Koneksi selalu ditutup
+    // karena awal request berikutnya di stream tidak bisa diketahui lagi.
+    void rejectRequest(HttpParseException e, ResponseOutputStream out) throws IOException {
+        long startNanos = System.nanoTime();
+        out.resetBytesWritten();
+        keepAlive = false;
+        host = webServer.getDefaultHost(); // header-nya tidak bisa dipercaya, jadi dicatat di log host default
+        String response = statusLine(e.getStatus(), e.getReason()) + "Content-Length: 0\r\n" + connectionHeaders() + "\r\n";
+        out.writeBytes(response);
+        long latencyNanos = System.nanoTime() - startNanos;
+        logAccess("-", clientAddress, e.getStatus() + " " + e.getMessage(), responseStatus, out.bytesWritten(),
+                latencyNanos);
+        webServer.getMetrics().recordRequest("", responseStatus, out.bytesWritten(), latencyNanos);
+    }
+
+    // Mengurai query string seperti page=2&sort=size menjadi map
+    static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            try {
+                String name = URLDecoder.decode(equals >= 0 ? pair.substring(0, equals) : pair, StandardCharsets.UTF_8);
+                String value = equals >= 0 ? URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8) : "";
+                params.putIfAbsent(name, value);
+            } catch (IllegalArgumentException e) {
+                // Parameter dengan encoding rusak diabaikan
+            }
+        }
+        return params;
+    }
+
+    // Nilai header dari request yang sedang dilayani, null jika tidak ada
+    private String requestHeader(String name) {
+        return request != null ? request.header(name) : null;
+    }
+
+    // HTTP/1.1 default-nya keep-alive, HTTP/1.0 hanya jika klien memintanya
+    private boolean isKeepAliveRequested(String version) {
+        String connection = request.header("connection");
+        connection = connection != null ? connection.toLowerCase() : "";
+        if (version.equals("HTTP/1.1")) {
+            return !connection.contains("close");
+        }
+        return connection.contains("keep-alive");
+    }
+
+    // Baris status respons; kodenya dicatat untuk metrik
+    private String statusLine(int status, String reason) {
+        responseStatus = status;
+        return "HTTP/1.1 " + status + " " + reason + "\r\n";
+    }
+
+    // Header Connection untuk respons sesuai status keep-alive koneksi ini
+    private String connectionHeaders() {
+        if (keepAlive) {
+            return "Connection: keep-alive\r\nKeep-Alive: timeout=" + (webServer.getKeepAliveTimeout() / 1000)
+                    + ", max=" + webServer.getMaxKeepAliveRequests() + "\r\n";
+        }
+        return "Connection: close\r\n";
+    }
+
     // Metode untuk menangani file yang direquest klien
-    private void serveFile(String requestURL, DataOutputStream out) throws IOException {
+    void serveFile(String requestURL, ResponseOutputStream out) throws IOException {
         try {
             // Mendapatkan path file
-            String filePath = Paths.get(WebServer.getWebRoot(), requestURL).toString();
+            String filePath = Paths.get(host.getWebRoot(), requestURL).toString();
             // Membuat objek file
             File file = new File(filePath);
+            // File yang ada di cache dijawab dari memori tanpa stat; FileChangeWatcher membuang entrinya
+            // begitu file berubah atau dihapus
+            StaticFileCache.Entry cached = requestHeader("range") == null
+                    ? host.getFileCache().getIfPresent(file.toPath()) : null;
 
-            if (file.exists()) {
+            if (cached != null) {
+                serveCachedFile(cached, out);
+            } else if (file.exists()) {
                 if (file.isDirectory()) {
                     if (requestURL.endsWith("/")) {
                         // Melayani daftar direktori kalau path berakhir dengan "/"
                         listDirectory(file, out, getParentDirectory(requestURL));
                     } else {
                         // Mengarahkan ke URL dengan akhiran "/" (jika tidak ada "/")
-                        String redirectURL = requestURL + "/";
-                        String response = "HTTP/1.1 301 Moved Permanently\r\nLocation: " + redirectURL + "\r\n\r\n";
+                        String redirectURL = encodePath(requestURL) + "/";
+                        String response = statusLine(301, "Moved Permanently") + "Location: " + redirectURL
+                                + "\r\nContent-Length: 0\r\n" + connectionHeaders() + "\r\n";
                         out.writeBytes(response);
                     }
                 } else {
-                    // Menentukan jenis konten berdasarkan ekstensi file
-                    String contentType = getContentType(file);
-
-                    // Membaca konten file dan mengirimkannya sebagai respons
-                    byte[] fileData = Files.readAllBytes(file.toPath());
-                    String response = "HTTP/1.1 200 OK\r\nContent-Length: " + fileData.length +
-                            "\r\nContent-Type: " + contentType + "\r\n\r\n";
-                    out.writeBytes(response);
-                    out.write(fileData);
+                    serveStaticFile(file, out);
                 }
             } else {
                 // Jika file tidak ditemukan
-                String response = "HTTP/1.1 404 Not Found\r\n\r\n";
+                String response = statusLine(404, "Not Found") + "Content-Length: 0\r\n" + connectionHeaders() + "\r\n";
                 out.writeBytes(response);
             }
         } catch (IOException e) {
             // Menangani error
             String errorMessage = e.getMessage();
-            String response = "HTTP/1.1 500 Internal Server Error\r\n\r\n";
+            String response = statusLine(500, "Internal Server Error") + "Content-Length: 0\r\n" + connectionHeaders() + "\r\n";
             out.writeBytes(response);
 
             // Tetap menulis log meskipun terjadi error
-            logAccess(requestURL, socket.getInetAddress().getHostAddress(), errorMessage);
+            logAccess(requestURL, clientAddress, errorMessage);
+        }
+    }
+
+    // Melayani file biasa: 304, Range, varian gzip, zero-copy, atau dari cache
+    private void serveStaticFile(File file, ResponseOutputStream out) throws IOException {
+        String contentType = getContentType(file);
+        boolean compressible = isCompressible(contentType);
+        File gzipSibling = compressible ? findGzipSibling(file) : null;
+        // Hanya file yang masuk cache heap yang dibaca ke memori; sisanya dikirim langsung dari disk atau mapping
+        boolean fromCache = file.length() <= webServer.getZeroCopyThreshold()
+                && host.getFileCache().isCacheable(file.length());
+        // Range selalu dilayani dari isi file asli. Tanpa file .gz, varian gzip hanya dibuat untuk file yang
+        // masuk cache sehingga setiap file dikompres sekali saja; file lain dikirim tanpa kompresi.
+        gzipResponse = compressible && acceptsGzip() && requestHeader("range") == null
+                && (gzipSibling != null || fromCache);
+
+        if (isNotModified(entityTag(file, gzipResponse), file.lastModified())) {
+            // Salinan di klien masih sama, cukup kirim header tanpa body
+            String response = statusLine(304, "Not Modified") + validatorHeaders(file, gzipResponse)
+                    + varyHeader(contentType) + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+        } else if (requestHeader("range") != null && serveRange(file, out)) {
+            // Sudah dijawab dengan 206 Partial Content atau 416
+        } else if (gzipResponse && gzipSibling != null) {
+            // Versi gzip yang sudah disiapkan di disk dikirim apa adanya
+            long length = gzipSibling.length();
+            String response = statusLine(200, "OK") + "Content-Length: " + length + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Encoding: gzip\r\n" + varyHeader(contentType) + validatorHeaders(file, true)
+                    + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+            out.transferFile(gzipSibling.toPath(), 0, length);
+        } else if (!fromCache) {
+            // File besar atau yang tidak masuk cache dikirim tanpa dimuat ke heap: dari mapping bersama jika masuk
+            // pool, selain itu langsung dari disk ke socket
+            long length = file.length();
+            String response = statusLine(200, "OK") + "Content-Length: " + length + "\r\nContent-Type: " + contentType
+                    + "\r\nAccept-Ranges: bytes\r\n" + varyHeader(contentType) + validatorHeaders(file, false)
+                    + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+            MappedFilePool pool = webServer.getMappedFiles();
+            MappedFilePool.Mapping mapping = pool != null && out.canWriteMapped()
+                    ? pool.acquire(file.toPath(), length, file.lastModified()) : null;
+            if (mapping != null) {
+                out.writeMapped(mapping, 0, length);
+            } else {
+                out.transferFile(file.toPath(), 0, length);
+            }
+        } else {
+            // File kecil yang sering diminta diambil dari cache tanpa membaca disk
+            StaticFileCache cache = host.getFileCache();
+            StaticFileCache.Entry entry = cache.get(file.toPath());
+            if (entry == null) {
+                long generation = cache.generation();
+                entry = createCacheEntry(file, contentType, compressible);
+                cache.put(file.toPath(), entry, generation);
+            }
+            writeCachedFile(entry, out);
+        }
+    }
+
+    // Jawaban untuk file yang sudah di-cache, termasuk 304, tanpa menyentuh disk
+    private void serveCachedFile(StaticFileCache.Entry entry, ResponseOutputStream out) throws IOException {
+        gzipResponse = entry.gzipBody != null && acceptsGzip();
+        if (isNotModified(gzipResponse ? entry.gzipEntityTag : entry.entityTag, entry.lastModified)) {
+            String response = statusLine(304, "Not Modified") + (gzipResponse ? entry.gzipValidators : entry.validators)
+                    + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+        } else {
+            writeCachedFile(entry, out);
         }
     }
 
+    // Mengirimkan header, header Connection, lalu isi file sebagai respons
+    private void writeCachedFile(StaticFileCache.Entry entry, ResponseOutputStream out) throws IOException {
+        responseStatus = 200;
+        if (gzipResponse) {
+            out.write(entry.gzipHeader);
+            out.writeBytes(connectionHeaders() + "\r\n");
+            out.write(entry.gzipBody);
+        } else {
+            out.write(entry.header);
+            out.writeBytes(connectionHeaders() + "\r\n");
+            out.write(entry.body);
+        }
+    }
+
+    // Membaca file dan menyiapkan header-nya; tipe teks sekalian dikompres sekali di sini
+    private StaticFileCache.Entry createCacheEntry(File file, String contentType, boolean compressible) throws IOException {
+        long lastModified = file.lastModified();
+        byte[] fileData = Files.readAllBytes(file.toPath());
+        String validators = validatorHeaders(file, false) + varyHeader(contentType);
+        String header = statusLine(200, "OK") + "Content-Length: " + fileData.length + "\r\nContent-Type: " + contentType
+                + "\r\nAccept-Ranges: bytes\r\n" + varyHeader(contentType) + validatorHeaders(file, false);
+        if (!compressible) {
+            return new StaticFileCache.Entry(header.getBytes(StandardCharsets.ISO_8859_1), fileData, null, null,
+                    lastModified, entityTag(file, false), null, validators, null);
+        }
+        byte[] gzipData = gzip(fileData);
+        String gzipHeader = statusLine(200, "OK") + "Content-Length: " + gzipData.length + "\r\nContent-Type: " + contentType
+                + "\r\nContent-Encoding: gzip\r\n" + varyHeader(contentType) + validatorHeaders(file, true);
+        return new StaticFileCache.Entry(header.getBytes(StandardCharsets.ISO_8859_1), fileData,
+                gzipHeader.getBytes(StandardCharsets.ISO_8859_1), gzipData, lastModified, entityTag(file, false),
+                entityTag(file, true), validators, validatorHeaders(file, true) + varyHeader(contentType));
+    }
+
+    // Tipe teks layak dikompres, sedangkan JPEG, PNG, PDF, dan sejenisnya sudah terkompresi
+    static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/");
+    }
+
+    // File .gz di sebelah file asli dipakai jika tidak lebih lama dari aslinya
+    private File findGzipSibling(File file) {
+        File sibling = new File(file.getPath() + ".gz");
+        return sibling.isFile() && sibling.lastModified() >= file.lastModified() ? sibling : null;
+    }
+
+    // Memeriksa apakah klien menerima gzip berdasarkan Accept-Encoding (termasuk nilai q)
+    private boolean acceptsGzip() {
+        String acceptEncoding = requestHeader("accept-encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            String coding = params[0].trim().toLowerCase();
+            double quality = 1.0;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return quality > 0;
+            }
+            if (coding.equals("*")) {
+                wildcard = quality > 0;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private String varyHeader(String contentType) {
+        return isCompressible(contentType) ? "Vary: Accept-Encoding\r\n" : "";
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 3));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(data);
+        }
+        return buffer.toByteArray();
+    }
+
+    // Menjawab request dengan header Range; false jika header-nya diabaikan dan file dikirim utuh
+    private boolean serveRange(File file, ResponseOutputStream out) throws IOException {
+        long fileLength = file.length();
+        // If-Range yang tidak cocok berarti file sudah berubah, jadi klien harus mengambil ulang semuanya
+        String ifRange = requestHeader("if-range");
+        if (ifRange != null && !isIfRangeSatisfied(file, ifRange)) {
+            return false;
+        }
+        List<ByteRange> ranges = ByteRange.parse(requestHeader("range"), fileLength);
+        if (ranges == null) {
+            return false;
+        }
+        if (ranges.isEmpty()) {
+            String response = statusLine(416, "Range Not Satisfiable") + "Content-Range: bytes */" + fileLength
+                    + "\r\nContent-Length: 0\r\n" + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+            return true;
+        }
+
+        String contentType = getContentType(file);
+        if (ranges.size() == 1) {
+            // Satu rentang: body-nya langsung potongan file tersebut
+            ByteRange range = ranges.get(0);
+            String response = statusLine(206, "Partial Content") + "Content-Range: " + range.contentRange(fileLength)
+                    + "\r\nContent-Length: " + range.length() + "\r\nContent-Type: " + contentType
+                    + "\r\nAccept-Ranges: bytes\r\n" + varyHeader(contentType) + validatorHeaders(file, false)
+                    + connectionHeaders() + "\r\n";
+            out.writeBytes(response);
+            out.transferFile(file.toPath(), range.start, range.length());
+            return true;
+        }
+
+        // Beberapa rentang: dikirim sebagai multipart/byteranges, panjang total dihitung lebih dulu
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+        List<String> partHeaders = new ArrayList<>();
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\nContent-Type: " + contentType
+                    + "\r\nContent-Range: " + range.contentRange(fileLength) + "\r\n\r\n";
+            partHeaders.add(partHeader);
+            contentLength += partHeader.length() + range.length();
+        }
+        String closing = "\r\n--" + boundary + "--\r\n";
+        contentLength += closing.length();
+
+        String response = statusLine(206, "Partial Content") + "Content-Length: " + contentLength
+                + "\r\nContent-Type: multipart/byteranges; boundary=" + boundary
+                + "\r\nAccept-Ranges: bytes\r\n" + varyHeader(contentType) + validatorHeaders(file, false)
+                + connectionHeaders() + "\r\n";
+        out.writeBytes(response);
+        for (int i = 0; i < ranges.size(); i++) {
+            ByteRange range = ranges.get(i);
+            out.writeBytes(partHeaders.get(i));
+            out.transferFile(file.toPath(), range.start, range.length());
+        }
+        out.writeBytes(closing);
+        return true;
+    }
+
+    // If-Range cocok jika ETag-nya sama persis (perbandingan kuat) atau tanggalnya sama dengan waktu modifikasi file
+    private boolean isIfRangeSatisfied(File file, String ifRange) {
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(entityTag(file, false));
+        }
+        long since = parseHttpDate(ifRange);
+        return since >= 0 && since / 1000 == file.lastModified() / 1000;
+    }
+
     // Mengambil tipe file berdasarkan ekstensi
-    private String getContentType(File file) {
+    String getContentType(File file) {
+        // Default content type untuk file yang tidak dikenal
+        return CONTENT_TYPES.getOrDefault(getExtension(file), "application/octet-stream");
+    }
+
+    // Mengambil ekstensi file dalam huruf kecil tanpa titik, string kosong jika tidak ada
+    static String getExtension(File file) {
         String fileName = file.getName().toLowerCase();
-        if (fileName.endsWith(".html") || fileName.endsWith(".htm")) {
-            return "text/html";
-        } else if (fileName.endsWith(".pdf")) {
-            return "application/pdf";
-        } else if (fileName.endsWith(".docx")) {
-            return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
-        } else if (fileName.endsWith(".txt")) {
-            return "text/plain";
-        } else if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
-            return "image/jpeg";
-        } else if (fileName.endsWith(".png")) {
-            return "image/png";
-        } else if (fileName.endsWith(".gif")) {
-            return "image/gif";
-        } else if (fileName.endsWith(".css")) {
-            return "text/css";
-        } else {
-            // Default content type untuk file yang tidak dikenal
-            return "application/octet-stream";
-        }
-    }
-
-    // Menyediakan daftar direktori sebagai respon
-    private void listDirectory(File directory, DataOutputStream out, String parentDirectory) throws IOException {
-        // Mendapatkan daftar file dalam direktori yang diberikan
-        File[] files = directory.listFiles();
-        // Membangun respons HTML untuk menampilkan daftar file
-        
-        StringBuilder responseBuilder = new StringBuilder("<html><head>");
-
-        // Menambahkan style untuk background image dengan URL eksternal
-       responseBuilder.append("<style>");
-    responseBuilder.append("body::before { content: ''; position: fixed; top: 0; left: 0; width: 100%; height: 100%; ");
-    responseBuilder.append("background-image: url('https://upload.wikimedia.org/wikipedia/commons/9/98/Logo_udinus1.jpg'); ");
-    responseBuilder.append("background-size: 30%; background-repeat: no-repeat; background-position: center; opacity: 0.5; z-index: -1; }");
-    responseBuilder.append("</style>");
-
-    responseBuilder.append("</head><body><h1>Directory Listing</h1>");
-        
-        // Menambahkan tombol "Back" jika tidak berada di direktori root
-        if (parentDirectory != null) {
-            responseBuilder.append("<button onclick=\"goBack()\">Back</button><br>");
-        }
-
-        // Membuat daftar file yang ada dalam direktori dalam bentuk list dan hyperlink
-        responseBuilder.append("<ul>");
-        if (files != null) {
-            for (File file : files) {
-                String fileName = file.getName();
-                // Memberi hyperlink pada setiap file dalam daftar
-                responseBuilder.append("<li><a href=\"").append(fileName).append("\">").append(fileName).append("</a></li>");
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1) : "";
+    }
+
+    // Header validator dan kebijakan cache untuk file ini
+    private String validatorHeaders(File file, boolean gzip) {
+        return "ETag: " + entityTag(file, gzip) + "\r\nLast-Modified: " + formatHttpDate(file.lastModified())
+                + "\r\nCache-Control: " + webServer.getCacheControl(getExtension(file)) + "\r\n";
+    }
+
+    // ETag dibentuk dari ukuran dan waktu modifikasi, berubah setiap kali isi file diganti.
+    // Varian gzip punya ETag sendiri karena isinya berbeda byte per byte.
+    private String entityTag(File file, boolean gzip) {
+        return "\"" + Long.toHexString(file.length()) + "-" + Long.toHexString(file.lastModified())
+                + (gzip ? "-gzip" : "") + "\"";
+    }
+
+    // Memeriksa If-None-Match (diutamakan) lalu If-Modified-Since, true jika cukup dijawab 304
+    private boolean isNotModified(String etag, long lastModified) {
+        String ifNoneMatch = requestHeader("if-none-match");
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2); // perbandingan lemah sesuai RFC 7232
+                }
+                if (tag.equals("*") || tag.equals(etag)) {
+                    return true;
+                }
             }
+            return false;
+        }
+        String ifModifiedSince = requestHeader("if-modified-since");
+        if (ifModifiedSince != null) {
+            long since = parseHttpDate(ifModifiedSince);
+            return since >= 0 && lastModified / 1000 <= since / 1000;
         }
+        return false;
+    }
+
+    // Format tanggal HTTP (IMF-fixdate), misalnya Sun, 06 Nov 1994 08:49:37 GMT
+    static String formatHttpDate(long millis) {
+        return HTTP_DATE_FORMAT.format(Instant.ofEpochMilli(millis));
+    }
 
-        // Menambahkan skrip untuk tombol back
-        responseBuilder.append("</ul>");
-        responseBuilder.append("<script>");
-        responseBuilder.append("function goBack() { window.history.back(); }"); // Skrip JavaScript untuk kembali
-        responseBuilder.append("</script>");
-        responseBuilder.append("</body></html>");
+    // Mengurai tanggal HTTP menjadi milidetik, -1 jika formatnya tidak dikenali
+    static long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
 
-        // Mengirim respons ke klien
-        String response = "HTTP/1.1 200 OK\r\nContent-Length: " + responseBuilder.length() +
-                "\r\nContent-Type: text/html\r\n\r\n" + responseBuilder.toString();
+    // Menampilkan metrik server dalam format teks Prometheus
+    private void serveMetrics(DataOutputStream out) throws IOException {
+        byte[] body = webServer.getMetrics().toPrometheus(webServer).getBytes(StandardCharsets.UTF_8);
+        String response = statusLine(200, "OK") + "Content-Length: " + body.length
+                + "\r\nContent-Type: text/plain; version=0.0.4; charset=utf-8\r\nCache-Control: no-store\r\n"
+                + connectionHeaders() + "\r\n";
         out.writeBytes(response);
+        out.write(body);
     }
 
+    // Menyediakan daftar direktori sebagai respon, halaman yang sudah jadi diambil dari cache listing
+    void listDirectory(File directory, DataOutputStream out, String parentDirectory) throws IOException {
+        DirectoryListingCache.Page page = host.getListingCache().get(directory.toPath(), parentDirectory != null,
+                requestQuery);
+
+        // Mengirim respons ke klien, dikompres jika klien menerima gzip
+        byte[] body = page.body;
+        String encodingHeader = "";
+        if (acceptsGzip()) {
+            body = page.gzipBody;
+            encodingHeader = "Content-Encoding: gzip\r\n";
+        }
+        String response = statusLine(200, "OK") + "Content-Length: " + body.length +
+                "\r\nContent-Type: text/html; charset=utf-8\r\n" + encodingHeader + "Vary: Accept-Encoding\r\n"
+                + connectionHeaders() + "\r\n";
+        out.writeBytes(response);
+        out.write(body);
+    }
+
+
+    // Meng-encode ulang path yang sudah di-decode agar aman dipakai di header Location
+    static String encodePath(String path) {
+        StringBuilder encoded = new StringBuilder(path.length() + 16);
+        String[] segments = path.split("/", -1);
+        for (int i = 1; i < segments.length; i++) {
+            encoded.append('/').append(URLEncoder.encode(segments[i], StandardCharsets.UTF_8).replace("+", "%20"));
+        }
+        return encoded.toString();
+    }
 
     // Mengambil direktori induk dari URL permintaan
     private String getParentDirectory(String requestURL) {
@@ -202,58 +709,20 @@ public class HttpRequestHandler extends Thread {
         return null;
     }
 
-    // Metode untuk mencatat akses
-    private void logAccess(String requestURL, String ipAddress, String message) {
-        // Tanggal saat ini dalam format yyyy-MM-dd
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String logFileName = dateFormat.format(new Date()) + ".log";
-        String logFilePath = Paths.get(logsPath, logFileName).toString();
-
-        try {
-            // Membuat direktori logs jika belum ada
-            File logsDir = new File(logsPath);
-            if (!logsDir.exists()) {
-                logsDir.mkdirs();
-            }
-            // Membuat file log jika belum ada
-            File logFile = new File(logFilePath);
-            if (!logFile.exists()) {
-                logFile.createNewFile();
-            }
-            // Format pesan log dengan tanggal, alamat IP, dan URL permintaan
-            String logEntry = String.format("[%s] %s - %s\n", new Date(), ipAddress, requestURL + " : " + message);
-            // Tulis log entry ke dalam file log
-            Files.write(Paths.get(logFilePath), logEntry.getBytes(), java.nio.file.StandardOpenOption.APPEND);
-
-            // Tambahkan log ke area log pada antarmuka pengguna
-            appendToLog(logEntry);
-        } catch (IOException e) {
-            e.printStackTrace();
-    }
-}
-
-
-    // Memuat log akses dari file log
-    public List<String> loadAccessLogs() {
-        List<String> logs = new ArrayList<>();
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-        String logFileName = dateFormat.format(new Date()) + ".log";
-        String logFilePath = Paths.get(logsPath, logFileName).toString(); // Sesuaikan dengan path log Anda
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(logFilePath))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                logs.add(line);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Metode untuk mencatat akses, penulisan ke file dilakukan oleh AccessLogWriter di thread lain
+    void logAccess(String requestURL, String ipAddress, String message) {
+        AccessLogWriter accessLog = host.getAccessLog();
+        if (accessLog != null) { // null selama server belum dijalankan
+            accessLog.log(ipAddress, requestURL, message);
         }
-
-        return logs;
     }
 
-    private void appendToLog(String logEntry) {
-        throw new UnsupportedOperationException("Not supported yet."); // Generated from nbfs://nbhost/SystemFileSystem/Templates/Classes/Code/GeneratedMethodBody
+    // Satu request yang selesai dijawab, beserta status, ukuran, dan latensinya untuk log biner
+    private void logAccess(String requestURL, String ipAddress, String message, int status, long bytes,
+                           long latencyNanos) {
+        AccessLogWriter accessLog = host.getAccessLog();
+        if (accessLog != null) {
+            accessLog.log(ipAddress, requestURL, message, status, bytes, latencyNanos / 1000);
+        }
     }
-    
-}
\ No newline at end of file
+}
@@ -0,0 +1,566 @@
+package webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Parser request HTTP/1.x yang bekerja langsung di atas buffer byte milik satu koneksi.
+// Metode, target, versi, dan header hanya dicatat sebagai offset di buffer; String baru dibuat saat nilainya diminta.
+// Buffer dipakai ulang untuk semua request di koneksi yang sama, termasuk sisa byte dari request pipelined.
+public class HttpRequestParser {
+    public static final int DEFAULT_MAX_REQUEST_LINE = 8192; // lebih panjang dari ini dijawab 414
+    public static final int DEFAULT_MAX_HEADER_BYTES = 16384; // total header lebih dari ini dijawab 431
+    static final int MAX_HEADER_COUNT = 100;
+    private static final int INITIAL_BUFFER_SIZE = 2048;
+
+    // Konstanta metode supaya request biasa tidak membuat String baru untuk metodenya
+    private static final String[] KNOWN_METHODS = {
+        "GET", "HEAD", "POST", "PUT", "DELETE", "OPTIONS", "PATCH", "TRACE", "CONNECT", "PRI"
+    };
+    private static final String HTTP_1_1 = "HTTP/1.1";
+    private static final String HTTP_1_0 = "HTTP/1.0";
+    private static final boolean[] TOKEN_CHARS = new boolean[128];
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN_CHARS[c] = true;
+            TOKEN_CHARS[c - 32] = true;
+        }
+        for (char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            TOKEN_CHARS[c] = true;
+        }
+    }
+
+    private final int maxRequestLine;
+    private final int maxHeaderBytes;
+    private final int maxHeadSize;
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    private ByteBuffer channelView; // pembungkus buffer untuk dibaca dari channel, dibuat ulang jika buffer membesar
+    private int limit; // jumlah byte valid di buffer
+
+    // Status pemindaian; pemindaian dilanjutkan dari posisi terakhir setiap kali data baru datang
+    private int scanPosition;
+    private int lineStart;
+    private int requestLineStart;
+    private int requestLineEnd = -1; // akhir isi request line (tanpa CRLF), -1 jika belum ditemukan
+    private int headersStart;
+    private int headEnd = -1; // posisi setelah baris kosong penutup header, -1 jika belum lengkap
+    private int[] headerFields = new int[16 * 4]; // per header: awal nama, akhir nama, awal nilai, akhir nilai
+    private int headerCount;
+
+    // Hasil parsing request yang sedang aktif
+    private String method;
+    private String version;
+    private String path;
+    private int targetStart;
+    private int targetEnd;
+    private int pathEnd; // posisi '?' atau akhir target
+    private int authorityStart = -1;
+    private int authorityEnd;
+    private String target; // dibuat saat diminta
+
+    public HttpRequestParser() {
+        this(DEFAULT_MAX_REQUEST_LINE, DEFAULT_MAX_HEADER_BYTES);
+    }
+
+    public HttpRequestParser(int maxRequestLine, int maxHeaderBytes) {
+        this.maxRequestLine = maxRequestLine;
+        this.maxHeaderBytes = maxHeaderBytes;
+        this.maxHeadSize = maxRequestLine + maxHeaderBytes + 4; // ditambah CRLF request line dan baris kosong
+    }
+
+    // Membaca data berikutnya dari stream ke buffer, hasilnya seperti InputStream.read (-1 jika koneksi selesai)
+    public int read(InputStream in) throws IOException {
+        ensureSpace();
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n > 0) {
+            limit += n;
+        }
+        return n;
+    }
+
+    // Sama seperti read(InputStream), untuk channel non-blocking (hasil 0 berarti belum ada data)
+    public int read(ReadableByteChannel channel) throws IOException {
+        ensureSpace();
+        if (channelView == null || channelView.array() != buffer) {
+            channelView = ByteBuffer.wrap(buffer);
+        }
+        channelView.limit(buffer.length).position(limit);
+        int n = channel.read(channelView);
+        if (n > 0) {
+            limit += n;
+        }
+        return n;
+    }
+
+    // Memasukkan byte yang sudah ada, misalnya header hasil terjemahan dari protokol lain
+    public void feed(byte[] data, int offset, int length) {
+        while (length > 0) {
+            ensureSpace();
+            int n = Math.min(length, buffer.length - limit);
+            System.arraycopy(data, offset, buffer, limit, n);
+            limit += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    // Melanjutkan pemindaian; true jika satu request lengkap sudah diurai dan bisa dibaca lewat getter
+    public boolean parse() throws HttpParseException {
+        if (headEnd >= 0) {
+            return true;
+        }
+        for (int i = scanPosition; i < limit; i++) {
+            if (buffer[i] != '\n') {
+                continue;
+            }
+            int end = i > lineStart && buffer[i - 1] == '\r' ? i - 1 : i;
+            if (requestLineEnd < 0) {
+                if (end > lineStart) {
+                    if (end - lineStart > maxRequestLine) {
+                        throw uriTooLong();
+                    }
+                    requestLineStart = lineStart;
+                    requestLineEnd = end;
+                    headersStart = i + 1;
+                }
+                // Baris kosong sebelum request line diabaikan (RFC 7230 bagian 3.5)
+            } else if (end == lineStart) {
+                headEnd = i + 1;
+                scanPosition = headEnd;
+                if (headEnd - headersStart > maxHeaderBytes + 2) {
+                    throw headersTooLarge();
+                }
+                parseRequestLine();
+                return true;
+            } else {
+                parseHeaderLine(lineStart, end);
+            }
+            lineStart = i + 1;
+        }
+        scanPosition = limit;
+
+        if (requestLineEnd < 0) {
+            if (lineStart > 0) {
+                compact(lineStart); // baris kosong di depan tidak perlu disimpan
+            }
+            if (limit > maxRequestLine + 1) {
+                throw uriTooLong();
+            }
+        } else if (limit - headersStart > maxHeaderBytes + 1) {
+            throw headersTooLarge();
+        }
+        return false;
+    }
+
+    // Membuang request yang sudah dilayani; sisa byte (request pipelined berikutnya) digeser ke awal buffer
+    public void next() {
+        compact(headEnd >= 0 ? headEnd : limit);
+        scanPosition = 0;
+        lineStart = 0;
+        requestLineStart = 0;
+        requestLineEnd = -1;
+        headersStart = 0;
+        headEnd = -1;
+        headerCount = 0;
+        method = null;
+        version = null;
+        path = null;
+        target = null;
+        authorityStart = -1;
+    }
+
+    // Membandingkan awal buffer dengan prefix: 1 jika cocok, 0 jika byte-nya belum cukup untuk memastikan,
+    // -1 jika tidak cocok. Dipakai untuk mengenali preface HTTP/2 sebelum parse pertama.
+    public int matchPrefix(byte[] prefix) {
+        int n = Math.min(limit, prefix.length);
+        for (int i = 0; i < n; i++) {
+            if (buffer[i] != prefix[i]) {
+                return -1;
+            }
+        }
+        return n == prefix.length ? 1 : 0;
+    }
+
+    // Mengambil byte yang tersisa setelah request saat ini (atau semua byte jika belum ada request lengkap)
+    // untuk diteruskan ke protokol lain; getter request saat ini tetap bisa dipakai
+    public byte[] takeRemainingInput() {
+        int from = headEnd >= 0 ? headEnd : 0;
+        byte[] remaining = Arrays.copyOfRange(buffer, from, limit);
+        limit = from;
+        if (headEnd < 0) {
+            next(); // request yang belum lengkap ikut diambil, status pemindaiannya tidak berlaku lagi
+        }
+        return remaining;
+    }
+
+    // Apakah masih ada byte request berikutnya di buffer
+    public boolean hasBufferedInput() {
+        return limit > 0;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public String version() {
+        return version;
+    }
+
+    // Target apa adanya seperti dikirim klien (belum di-decode), dipakai untuk log
+    public String target() {
+        if (target == null) {
+            target = ascii(targetStart, targetEnd);
+        }
+        return target;
+    }
+
+    // Path yang sudah di-percent-decode dan dinormalisasi (tanpa segmen . dan ..), selalu diawali '/'
+    public String path() {
+        return path;
+    }
+
+    // Query string mentah tanpa '?', null jika tidak ada
+    public String query() {
+        return pathEnd < targetEnd ? ascii(pathEnd + 1, targetEnd) : null;
+    }
+
+    // Host dari target bentuk absolut (http://host/path), null untuk target biasa
+    public String authority() {
+        return authorityStart >= 0 ? ascii(authorityStart, authorityEnd) : null;
+    }
+
+    // Nilai header dengan nama huruf kecil, null jika tidak ada; header yang berulang digabung dengan koma
+    public String header(String lowerCaseName) {
+        String value = null;
+        for (int i = 0; i < headerCount; i++) {
+            int field = i * 4;
+            if (nameEquals(headerFields[field], headerFields[field + 1], lowerCaseName)) {
+                String current = new String(buffer, headerFields[field + 2],
+                        headerFields[field + 3] - headerFields[field + 2], StandardCharsets.ISO_8859_1);
+                value = value == null ? current : value + ", " + current;
+            }
+        }
+        return value;
+    }
+
+    public boolean hasHeader(String lowerCaseName) {
+        for (int i = 0; i < headerCount; i++) {
+            if (nameEquals(headerFields[i * 4], headerFields[i * 4 + 1], lowerCaseName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int headerCount() {
+        return headerCount;
+    }
+
+    // Nama header ke-i dalam huruf kecil
+    public String headerName(int index) {
+        int start = headerFields[index * 4];
+        int end = headerFields[index * 4 + 1];
+        char[] name = new char[end - start];
+        for (int i = start; i < end; i++) {
+            name[i - start] = (char) toLowerCase(buffer[i]);
+        }
+        return new String(name);
+    }
+
+    public String headerValue(int index) {
+        int start = headerFields[index * 4 + 2];
+        return new String(buffer, start, headerFields[index * 4 + 3] - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private void ensureSpace() {
+        if (limit < buffer.length) {
+            return;
+        }
+        if (buffer.length >= maxHeadSize) {
+            // Tidak terjadi selama parse() dipanggil setelah setiap read, karena batasnya sudah dilempar di sana
+            throw new IllegalStateException("Buffer request penuh");
+        }
+        buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxHeadSize));
+    }
+
+    private void compact(int from) {
+        int remaining = limit - from;
+        System.arraycopy(buffer, from, buffer, 0, remaining);
+        limit = remaining;
+        scanPosition -= from;
+        lineStart -= from;
+    }
+
+    // Memecah request line: METHOD SP request-target SP HTTP-version
+    private void parseRequestLine() throws HttpParseException {
+        int start = requestLineStart;
+        int end = requestLineEnd;
+        int firstSpace = indexOf((byte) ' ', start, end);
+        if (firstSpace <= start) {
+            throw HttpParseException.badRequest("Request line tidak valid");
+        }
+        for (int i = start; i < firstSpace; i++) {
+            if (!isTokenChar(buffer[i])) {
+                throw HttpParseException.badRequest("Metode tidak valid");
+            }
+        }
+        method = knownMethod(start, firstSpace);
+
+        targetStart = firstSpace + 1;
+        int secondSpace = indexOf((byte) ' ', targetStart, end);
+        targetEnd = secondSpace >= 0 ? secondSpace : end;
+        if (targetEnd == targetStart) {
+            throw HttpParseException.badRequest("Request target kosong");
+        }
+        for (int i = targetStart; i < targetEnd; i++) {
+            if (buffer[i] <= ' ' || buffer[i] == 0x7f) { // byte >= 0x80 bernilai negatif
+                throw HttpParseException.badRequest("Karakter tidak valid di request target");
+            }
+        }
+
+        if (secondSpace < 0) {
+            version = HTTP_1_0; // request tanpa versi dianggap HTTP/1.0
+        } else if (regionEquals(secondSpace + 1, end, HTTP_1_1)) {
+            version = HTTP_1_1;
+        } else if (regionEquals(secondSpace + 1, end, HTTP_1_0)) {
+            version = HTTP_1_0;
+        } else if (end - secondSpace - 1 > 5 && regionEquals(secondSpace + 1, secondSpace + 6, "HTTP/")
+                && indexOf((byte) ' ', secondSpace + 1, end) < 0) {
+            throw new HttpParseException(505, "HTTP Version Not Supported", "Versi HTTP tidak didukung");
+        } else {
+            throw HttpParseException.badRequest("Versi HTTP tidak valid");
+        }
+
+        int pathStart = parseTargetForm();
+        pathEnd = indexOf((byte) '?', pathStart, targetEnd);
+        if (pathEnd < 0) {
+            pathEnd = targetEnd;
+        }
+        path = pathStart == pathEnd ? "/" : decodePath(pathStart, pathEnd);
+    }
+
+    // Mengembalikan awal bagian path dari target (origin-form, absolute-form, atau asterisk-form)
+    private int parseTargetForm() throws HttpParseException {
+        byte first = buffer[targetStart];
+        if (first == '/') {
+            return targetStart;
+        }
+        if (first == '*' && targetEnd - targetStart == 1) {
+            return targetStart; // OPTIONS *
+        }
+        int schemeEnd;
+        if (regionEqualsIgnoreCase(targetStart, "http://")) {
+            schemeEnd = targetStart + 7;
+        } else if (regionEqualsIgnoreCase(targetStart, "https://")) {
+            schemeEnd = targetStart + 8;
+        } else {
+            throw HttpParseException.badRequest("Bentuk request target tidak dikenal");
+        }
+        int pathStart = schemeEnd;
+        while (pathStart < targetEnd && buffer[pathStart] != '/' && buffer[pathStart] != '?') {
+            pathStart++;
+        }
+        if (pathStart == schemeEnd) {
+            throw HttpParseException.badRequest("Host kosong di request target");
+        }
+        authorityStart = schemeEnd;
+        authorityEnd = pathStart;
+        return pathStart;
+    }
+
+    private void parseHeaderLine(int start, int end) throws HttpParseException {
+        if (headerCount == MAX_HEADER_COUNT) {
+            throw headersTooLarge();
+        }
+        byte first = buffer[start];
+        if (first == ' ' || first == '\t') {
+            // obs-fold sudah tidak diperbolehkan (RFC 7230 bagian 3.2.4)
+            throw HttpParseException.badRequest("Header lanjutan (obs-fold) tidak didukung");
+        }
+        int colon = start;
+        while (colon < end && buffer[colon] != ':') {
+            if (!isTokenChar(buffer[colon])) {
+                throw HttpParseException.badRequest("Nama header tidak valid");
+            }
+            colon++;
+        }
+        if (colon == start || colon == end) {
+            throw HttpParseException.badRequest("Header tanpa nama atau tanpa ':'");
+        }
+        int valueStart = colon + 1;
+        int valueEnd = end;
+        while (valueStart < valueEnd && (buffer[valueStart] == ' ' || buffer[valueStart] == '\t')) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && (buffer[valueEnd - 1] == ' ' || buffer[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        for (int i = valueStart; i < valueEnd; i++) {
+            byte b = buffer[i];
+            if ((b >= 0 && b < ' ' && b != '\t') || b == 0x7f) {
+                throw HttpParseException.badRequest("Karakter kontrol di nilai header");
+            }
+        }
+        if (headerFields.length < (headerCount + 1) * 4) {
+            headerFields = Arrays.copyOf(headerFields, headerFields.length * 2);
+        }
+        int field = headerCount * 4;
+        headerFields[field] = start;
+        headerFields[field + 1] = colon;
+        headerFields[field + 2] = valueStart;
+        headerFields[field + 3] = valueEnd;
+        headerCount++;
+    }
+
+    // Percent-decoding path sebagai UTF-8; escape rusak, %00, dan UTF-8 tidak valid ditolak
+    private String decodePath(int start, int end) throws HttpParseException {
+        int percent = indexOf((byte) '%', start, end);
+        String decoded;
+        if (percent < 0) {
+            decoded = ascii(start, end); // kasus umum: tanpa escape, hanya satu String
+        } else {
+            byte[] bytes = new byte[end - start];
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                byte b = buffer[i];
+                if (b == '%') {
+                    if (i + 2 >= end) {
+                        throw HttpParseException.badRequest("Percent-encoding terpotong");
+                    }
+                    int high = Character.digit(buffer[i + 1], 16);
+                    int low = Character.digit(buffer[i + 2], 16);
+                    if (high < 0 || low < 0 || (high == 0 && low == 0)) {
+                        throw HttpParseException.badRequest("Percent-encoding tidak valid");
+                    }
+                    bytes[length++] = (byte) (high << 4 | low);
+                    i += 2;
+                } else {
+                    bytes[length++] = b;
+                }
+            }
+            try {
+                CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPORT)
+                        .onUnmappableCharacter(CodingErrorAction.REPORT)
+                        .decode(ByteBuffer.wrap(bytes, 0, length));
+                decoded = chars.toString();
+            } catch (CharacterCodingException e) {
+                throw HttpParseException.badRequest("Path bukan UTF-8 yang valid");
+            }
+        }
+        return removeDotSegments(decoded);
+    }
+
+    // Menghapus segmen . dan .. (RFC 3986 bagian 5.2.4); path yang naik melewati root ditolak
+    static String removeDotSegments(String path) throws HttpParseException {
+        if (!path.contains("/.")) {
+            return path;
+        }
+        String[] segments = path.split("/", -1);
+        List<String> output = new ArrayList<>(segments.length);
+        boolean trailingSlash = false;
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            trailingSlash = false;
+            if (segment.equals(".")) {
+                trailingSlash = true;
+            } else if (segment.equals("..")) {
+                if (output.isEmpty()) {
+                    throw HttpParseException.badRequest("Path keluar dari root");
+                }
+                output.remove(output.size() - 1);
+                trailingSlash = true;
+            } else {
+                output.add(segment);
+            }
+        }
+        String normalized = "/" + String.join("/", output);
+        return trailingSlash && !output.isEmpty() ? normalized + "/" : normalized;
+    }
+
+    private String knownMethod(int start, int end) {
+        for (String known : KNOWN_METHODS) {
+            if (regionEquals(start, end, known)) {
+                return known;
+            }
+        }
+        return ascii(start, end);
+    }
+
+    private boolean nameEquals(int start, int end, String lowerCaseName) {
+        if (end - start != lowerCaseName.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (toLowerCase(buffer[i]) != lowerCaseName.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionEquals(int start, int end, String text) {
+        if (end - start != text.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (buffer[i] != text.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionEqualsIgnoreCase(int start, String lowerCaseText) {
+        if (targetEnd - start < lowerCaseText.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCaseText.length(); i++) {
+            if (toLowerCase(buffer[start + i]) != lowerCaseText.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String ascii(int start, int end) {
+        return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean isTokenChar(byte b) {
+        return b > 0 && TOKEN_CHARS[b];
+    }
+
+    private static int toLowerCase(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + 32 : b & 0xff;
+    }
+
+    private static HttpParseException uriTooLong() {
+        return new HttpParseException(414, "URI Too Long", "Request line terlalu panjang");
+    }
+
+    private static HttpParseException headersTooLarge() {
+        return new HttpParseException(431, "Request Header Fields Too Large", "Header request terlalu besar");
+    }
+}
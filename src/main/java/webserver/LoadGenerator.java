@@ -0,0 +1,719 @@
+package webserver;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+// Generator beban untuk server lokal lewat loopback, memakai HTTP/1.1 langsung di atas socket.
+// - Closed loop (tanpa --rate): setiap koneksi mengirim request berikutnya begitu respons sebelumnya selesai.
+// - Open loop (--rate): request dijadwalkan pada laju tetap dan latensinya dihitung dari waktu request itu
+//   seharusnya dikirim. Server yang tersendat tidak ikut memperlambat jadwal, jadi antrean yang terbentuk
+//   tetap terlihat di persentil atas (menghindari coordinated omission).
+// Laporannya berisi throughput, jumlah error, dan persentil latensi dalam bentuk teks dan JSON yang urutan
+// kuncinya tetap, sehingga hasil dua build bisa langsung di-diff.
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99};
+    private static final int RESPONSE_HEAD_LIMIT = 64 * 1024;
+
+    private String host = "127.0.0.1";
+    private int port = 8000;
+    private int concurrency = 16; // jumlah koneksi, masing-masing dengan satu thread
+    private int durationSeconds = 30; // lama pengukuran, di luar warmup
+    private int warmupSeconds = 5; // request selama warmup dikirim tetapi tidak dicatat
+    private double rate = 0; // request per detik untuk open loop, 0 berarti closed loop
+    private boolean keepAlive = true;
+    private int timeoutMillis = 10000; // batas connect dan baca per request
+    private long seed = 1; // urutan request sama untuk seed yang sama
+    private final List<String> paths = new ArrayList<>();
+    private final List<Double> weights = new ArrayList<>();
+
+    public static void main(String[] args) {
+        LoadGenerator generator = new LoadGenerator();
+        String root = null;
+        String files = null;
+        String json = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--load-test")) {
+                    continue;
+                }
+                if (arg.equals("--help") || arg.equals("-h")) {
+                    printUsage(System.out);
+                    return;
+                }
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Argumen tidak dikenal: " + arg);
+                }
+                String name = arg.substring(2);
+                String value;
+                int equals = name.indexOf('=');
+                if (equals >= 0) {
+                    value = name.substring(equals + 1);
+                    name = name.substring(0, equals);
+                } else if (i + 1 < args.length) {
+                    value = args[++i];
+                } else {
+                    throw new IllegalArgumentException("Nilai untuk --" + name + " belum diisi");
+                }
+                switch (name) {
+                    case "host":
+                        generator.setHost(value);
+                        break;
+                    case "port":
+                        generator.setPort((int) parseNumber(name, value));
+                        break;
+                    case "root":
+                        root = value;
+                        break;
+                    case "files":
+                        files = value;
+                        break;
+                    case "concurrency":
+                        generator.setConcurrency((int) parseNumber(name, value));
+                        break;
+                    case "duration":
+                        generator.setDurationSeconds((int) parseNumber(name, value));
+                        break;
+                    case "warmup":
+                        generator.setWarmupSeconds((int) parseNumber(name, value));
+                        break;
+                    case "rate":
+                        generator.setRate(parseRate(value));
+                        break;
+                    case "keep-alive":
+                        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+                            throw new IllegalArgumentException("Nilai keep-alive tidak valid: " + value);
+                        }
+                        generator.setKeepAlive(Boolean.parseBoolean(value));
+                        break;
+                    case "timeout":
+                        generator.setTimeoutMillis((int) parseNumber(name, value));
+                        break;
+                    case "seed":
+                        generator.setSeed(parseNumber(name, value));
+                        break;
+                    case "json":
+                        json = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opsi tidak dikenal: --" + name);
+                }
+            }
+            if (files != null) {
+                generator.loadFileList(Paths.get(files));
+            } else if (root != null) {
+                generator.scanWebRoot(Paths.get(root));
+            } else {
+                generator.addPath("/", 1);
+            }
+            Report report = generator.run();
+            report.print(System.out);
+            if (json != null) {
+                if (json.equals("-")) {
+                    System.out.println(report.toJson());
+                } else {
+                    Path jsonPath = Paths.get(json);
+                    if (jsonPath.getParent() != null) {
+                        Files.createDirectories(jsonPath.getParent());
+                    }
+                    Files.writeString(jsonPath, report.toJson() + "\n", StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static long parseNumber(String key, String value) {
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number < 0) {
+                throw new NumberFormatException();
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai " + key + " tidak valid: " + value);
+        }
+    }
+
+    // Laju open loop dalam request per detik; boleh pecahan, misalnya 0.5 untuk satu request setiap dua detik
+    private static double parseRate(String value) {
+        try {
+            double rate = Double.parseDouble(value.trim());
+            if (!(rate > 0) || Double.isInfinite(rate)) {
+                throw new NumberFormatException();
+            }
+            return rate;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Nilai rate tidak valid: " + value);
+        }
+    }
+
+    public void addPath(String path, double weight) {
+        if (!path.startsWith("/") || weight <= 0) {
+            throw new IllegalArgumentException("Path request tidak valid: " + path);
+        }
+        paths.add(path);
+        weights.add(weight);
+    }
+
+    // Daftar request dari file teks: satu path per baris dengan bobot opsional ("/img/logo.png 5"),
+    // baris kosong dan baris yang diawali # dilewati
+    public void loadFileList(Path listFile) throws IOException {
+        for (String line : Files.readAllLines(listFile, StandardCharsets.UTF_8)) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            String[] parts = trimmed.split("\\s+");
+            double weight = 1;
+            if (parts.length > 1) {
+                try {
+                    weight = Double.parseDouble(parts[1]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bobot tidak valid di " + listFile + ": " + line);
+                }
+            }
+            addPath(parts[0], weight);
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Daftar file kosong: " + listFile);
+        }
+    }
+
+    // Semua file biasa di bawah web root, diurutkan supaya campuran request sama di setiap run
+    public void scanWebRoot(Path root) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Direktori root tidak ditemukan: " + root);
+        }
+        List<Path> found;
+        try (Stream<Path> walk = Files.walk(root)) {
+            found = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        for (Path file : found) {
+            StringBuilder path = new StringBuilder();
+            for (Path part : root.relativize(file)) {
+                path.append('/').append(part);
+            }
+            addPath(HttpRequestHandler.encodePath(path.toString()), 1);
+        }
+        if (paths.isEmpty()) {
+            throw new IllegalArgumentException("Tidak ada file di " + root);
+        }
+    }
+
+    // Menjalankan beban sampai warmup dan durasi pengukuran selesai
+    public Report run() {
+        if (paths.isEmpty()) {
+            throw new IllegalStateException("Belum ada path untuk di-request");
+        }
+        byte[][] requests = new byte[paths.size()][];
+        double[] cumulative = new double[paths.size()];
+        double total = 0;
+        for (int i = 0; i < requests.length; i++) {
+            requests[i] = buildRequest(paths.get(i));
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+
+        Results results = new Results();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100); // semua thread sempat siap
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        // Request terjadwal yang belum sempat dikirim sampai batas ini dihitung sebagai "missed"
+        long drainDeadline = end + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        AtomicLong nextSlot = new AtomicLong();
+        Thread[] workers = new Thread[Math.max(1, concurrency)];
+        for (int i = 0; i < workers.length; i++) {
+            int index = i;
+            workers[i] = new Thread(() -> runWorker(index, requests, cumulative, start, measureFrom, end,
+                    drainDeadline, nextSlot, results), "load-worker-" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        long finished = Math.max(System.nanoTime(), end);
+        if (rate > 0) {
+            // Slot terjadwal di jendela pengukuran yang tidak pernah dikirim tetap dilaporkan
+            long scheduled = slotAt(start, end) - slotAt(start, measureFrom);
+            long sent = results.responseTime.getCount() + results.connectErrors.sum() + results.timeouts.sum()
+                    + results.ioErrors.sum();
+            results.missed.add(Math.max(0, scheduled - sent));
+        }
+        return new Report(this, results, finished - measureFrom);
+    }
+
+    private byte[] buildRequest(String path) {
+        String request = "GET " + path + " HTTP/1.1\r\nHost: " + host + ":" + port
+                + "\r\nUser-Agent: earlybird-loadgen\r\n" + (keepAlive ? "" : "Connection: close\r\n") + "\r\n";
+        return request.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private void runWorker(int index, byte[][] requests, double[] cumulative, long start, long measureFrom, long end,
+                           long drainDeadline, AtomicLong nextSlot, Results results) {
+        SplittableRandom random = new SplittableRandom(seed * 31 + index);
+        Connection connection = null;
+        try {
+            while (true) {
+                long intended;
+                if (rate > 0) {
+                    intended = slotTime(start, nextSlot.getAndIncrement());
+                    if (intended >= end) {
+                        break;
+                    }
+                    waitUntil(intended);
+                    if (System.nanoTime() > drainDeadline) {
+                        // Jadwal sudah tertinggal terlalu jauh; slot yang tersisa dihitung sebagai missed oleh run
+                        break;
+                    }
+                } else {
+                    intended = Math.max(System.nanoTime(), start);
+                    waitUntil(intended);
+                    if (intended >= end) {
+                        break;
+                    }
+                }
+                boolean measured = intended >= measureFrom;
+                byte[] request = requests[pick(random, cumulative)];
+                long sent = System.nanoTime();
+                try {
+                    if (connection == null) {
+                        connection = new Connection();
+                    }
+                    Response response = connection.exchange(request);
+                    long done = System.nanoTime();
+                    if (measured) {
+                        results.record(response, TimeUnit.NANOSECONDS.toMicros(done - intended),
+                                TimeUnit.NANOSECONDS.toMicros(done - sent));
+                    }
+                    if (!response.keepAlive) {
+                        connection.close();
+                        connection = null;
+                    }
+                } catch (IOException e) {
+                    if (measured) {
+                        results.recordError(e);
+                    }
+                    if (connection != null) {
+                        connection.close();
+                        connection = null;
+                    }
+                }
+            }
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    // Waktu kirim terjadwal untuk slot ke-n pada open loop
+    private long slotTime(long start, long slot) {
+        return start + (long) (slot * (TimeUnit.SECONDS.toNanos(1) / rate));
+    }
+
+    // Indeks slot pertama yang waktunya tidak lebih awal dari time
+    private long slotAt(long start, long time) {
+        long slot = (long) ((time - start) * rate / TimeUnit.SECONDS.toNanos(1));
+        while (slot > 0 && slotTime(start, slot - 1) >= time) {
+            slot--;
+        }
+        while (slotTime(start, slot) < time) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static int pick(SplittableRandom random, double[] cumulative) {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        int index = Arrays.binarySearch(cumulative, value);
+        index = index >= 0 ? index + 1 : -index - 1;
+        return Math.min(index, cumulative.length - 1);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(int durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public void setWarmupSeconds(int warmupSeconds) {
+        this.warmupSeconds = warmupSeconds;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Hasil satu request: status, byte yang diterima, dan apakah koneksinya boleh dipakai lagi
+    private static final class Response {
+        final int status;
+        final long bytes;
+        final boolean keepAlive;
+
+        Response(int status, long bytes, boolean keepAlive) {
+            this.status = status;
+            this.bytes = bytes;
+            this.keepAlive = keepAlive;
+        }
+    }
+
+    // Satu koneksi HTTP/1.1 blocking; respons dibaca sesuai Content-Length, atau sampai koneksi ditutup
+    private final class Connection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] head = new byte[RESPONSE_HEAD_LIMIT];
+
+        Connection() throws IOException {
+            socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+                socket.setSoTimeout(timeoutMillis);
+                in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+                out = socket.getOutputStream();
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        Response exchange(byte[] request) throws IOException {
+            out.write(request);
+            int length = readHead();
+            String text = new String(head, 0, length, StandardCharsets.ISO_8859_1);
+            if (!text.startsWith("HTTP/1.") || text.length() < 12) {
+                throw new IOException("Status line tidak valid");
+            }
+            int status = Integer.parseInt(text.substring(9, 12));
+            long contentLength = -1;
+            boolean close = false;
+            for (String line : text.split("\r\n")) {
+                int colon = line.indexOf(':');
+                if (colon <= 0) {
+                    continue;
+                }
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("content-length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equals("connection") && value.toLowerCase(Locale.ROOT).contains("close")) {
+                    close = true;
+                }
+            }
+            long body;
+            if (status == 204 || status == 304 || status / 100 == 1) {
+                body = 0;
+            } else if (contentLength >= 0) {
+                in.skipNBytes(contentLength);
+                body = contentLength;
+            } else {
+                // Tanpa Content-Length body berakhir saat server menutup koneksi
+                body = in.transferTo(OutputStream.nullOutputStream());
+                close = true;
+            }
+            return new Response(status, length + body, keepAlive && !close);
+        }
+
+        // Membaca status line dan header sampai baris kosong; hasilnya jumlah byte head
+        private int readHead() throws IOException {
+            int length = 0;
+            while (true) {
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Koneksi ditutup sebelum respons lengkap");
+                }
+                if (length == head.length) {
+                    throw new IOException("Header respons terlalu besar");
+                }
+                head[length++] = (byte) b;
+                if (length >= 4 && head[length - 1] == '\n' && head[length - 2] == '\r'
+                        && head[length - 3] == '\n' && head[length - 4] == '\r') {
+                    return length;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    // Penghitung bersama semua thread pekerja
+    private static final class Results {
+        final LatencyHistogram responseTime = new LatencyHistogram(); // dari waktu terjadwal, mikrodetik
+        final LatencyHistogram serviceTime = new LatencyHistogram(); // dari waktu benar-benar dikirim
+        final LongAdder bytes = new LongAdder();
+        final LongAdder[] statusClasses = new LongAdder[6]; // indeks 1-5 untuk 1xx-5xx, 0 untuk lainnya
+        final LongAdder connectErrors = new LongAdder();
+        final LongAdder timeouts = new LongAdder();
+        final LongAdder ioErrors = new LongAdder();
+        final LongAdder missed = new LongAdder();
+
+        Results() {
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] = new LongAdder();
+            }
+        }
+
+        void record(Response response, long responseMicros, long serviceMicros) {
+            int statusClass = response.status / 100;
+            statusClasses[statusClass >= 1 && statusClass <= 5 ? statusClass : 0].increment();
+            bytes.add(response.bytes);
+            responseTime.record(responseMicros);
+            serviceTime.record(serviceMicros);
+        }
+
+        void recordError(IOException e) {
+            if (e instanceof ConnectException) {
+                connectErrors.increment();
+            } else if (e instanceof SocketTimeoutException) {
+                timeouts.increment();
+            } else {
+                ioErrors.increment();
+            }
+        }
+    }
+
+    // Ringkasan satu run dalam bentuk teks untuk dibaca dan JSON untuk dibandingkan antar build
+    public static final class Report {
+        private final LoadGenerator settings;
+        private final Results results;
+        private final long elapsedNanos;
+
+        private Report(LoadGenerator settings, Results results, long elapsedNanos) {
+            this.settings = settings;
+            this.results = results;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRequests() {
+            return results.responseTime.getCount();
+        }
+
+        public long getErrors() {
+            return results.connectErrors.sum() + results.timeouts.sum() + results.ioErrors.sum()
+                    + results.missed.sum();
+        }
+
+        public double getThroughput() {
+            return getRequests() / (elapsedNanos / 1e9);
+        }
+
+        public LatencyHistogram getResponseTime() {
+            return results.responseTime;
+        }
+
+        public LatencyHistogram getServiceTime() {
+            return results.serviceTime;
+        }
+
+        public void print(PrintStream out) {
+            boolean open = settings.rate > 0;
+            out.printf(Locale.ROOT, "Target      %s:%d, %d paths, %s%n", settings.host, settings.port,
+                    settings.paths.size(), settings.keepAlive ? "keep-alive" : "new connection per request");
+            out.printf(Locale.ROOT, "Mode        %s, %d connections, %d s (+%d s warmup)%n",
+                    open ? String.format(Locale.ROOT, "open loop at %.1f req/s", settings.rate) : "closed loop",
+                    settings.concurrency, settings.durationSeconds, settings.warmupSeconds);
+            out.printf(Locale.ROOT, "Requests    %d in %.2f s, %.1f req/s, %.2f MB/s%n", getRequests(),
+                    elapsedNanos / 1e9, getThroughput(), results.bytes.sum() / (elapsedNanos / 1e9) / (1024 * 1024));
+            out.printf(Locale.ROOT, "Status      1xx %d  2xx %d  3xx %d  4xx %d  5xx %d  other %d%n",
+                    results.statusClasses[1].sum(), results.statusClasses[2].sum(), results.statusClasses[3].sum(),
+                    results.statusClasses[4].sum(), results.statusClasses[5].sum(), results.statusClasses[0].sum());
+            out.printf(Locale.ROOT, "Errors      connect %d  timeout %d  io %d  missed %d%n",
+                    results.connectErrors.sum(), results.timeouts.sum(), results.ioErrors.sum(), results.missed.sum());
+            StringBuilder header = new StringBuilder("Latency ms  ").append(String.format("%9s", "mean"));
+            for (double percentile : PERCENTILES) {
+                header.append(String.format(Locale.ROOT, "%9s", "p" + formatPercentile(percentile)));
+            }
+            out.println(header.append(String.format("%9s", "max")));
+            // Closed loop tidak punya jadwal, jadi response time sama dengan service time
+            printLatency(out, open ? "  response" : "  service", results.responseTime);
+            if (open) {
+                printLatency(out, "  service", results.serviceTime);
+            }
+        }
+
+        private static void printLatency(PrintStream out, String label, LatencyHistogram histogram) {
+            StringBuilder line = new StringBuilder(String.format("%-12s", label));
+            line.append(String.format(Locale.ROOT, "%9.3f", histogram.getMean() / 1000));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(Locale.ROOT, "%9.3f", histogram.getValueAtPercentile(percentile) / 1000.0));
+            }
+            out.println(line.append(String.format(Locale.ROOT, "%9.3f", histogram.getMax() / 1000.0)));
+        }
+
+        // JSON dengan urutan kunci tetap; latensi dalam mikrodetik
+        public String toJson() {
+            StringBuilder json = new StringBuilder(1024);
+            json.append("{\n");
+            json.append("  \"target\": \"").append(settings.host).append(':').append(settings.port).append("\",\n");
+            json.append("  \"mode\": \"").append(settings.rate > 0 ? "open" : "closed").append("\",\n");
+            json.append("  \"rate\": ").append(format(settings.rate)).append(",\n");
+            json.append("  \"concurrency\": ").append(settings.concurrency).append(",\n");
+            json.append("  \"keepAlive\": ").append(settings.keepAlive).append(",\n");
+            json.append("  \"durationSeconds\": ").append(settings.durationSeconds).append(",\n");
+            json.append("  \"warmupSeconds\": ").append(settings.warmupSeconds).append(",\n");
+            json.append("  \"paths\": ").append(settings.paths.size()).append(",\n");
+            json.append("  \"seed\": ").append(settings.seed).append(",\n");
+            json.append("  \"requests\": ").append(getRequests()).append(",\n");
+            json.append("  \"elapsedSeconds\": ").append(format(elapsedNanos / 1e9)).append(",\n");
+            json.append("  \"throughput\": ").append(format(getThroughput())).append(",\n");
+            json.append("  \"bytesReceived\": ").append(results.bytes.sum()).append(",\n");
+            json.append("  \"status\": {\"1xx\": ").append(results.statusClasses[1].sum())
+                    .append(", \"2xx\": ").append(results.statusClasses[2].sum())
+                    .append(", \"3xx\": ").append(results.statusClasses[3].sum())
+                    .append(", \"4xx\": ").append(results.statusClasses[4].sum())
+                    .append(", \"5xx\": ").append(results.statusClasses[5].sum())
+                    .append(", \"other\": ").append(results.statusClasses[0].sum()).append("},\n");
+            json.append("  \"errors\": {\"connect\": ").append(results.connectErrors.sum())
+                    .append(", \"timeout\": ").append(results.timeouts.sum())
+                    .append(", \"io\": ").append(results.ioErrors.sum())
+                    .append(", \"missed\": ").append(results.missed.sum()).append("},\n");
+            json.append("  \"responseTimeMicros\": ");
+            appendLatency(json, results.responseTime);
+            json.append(",\n  \"serviceTimeMicros\": ");
+            appendLatency(json, results.serviceTime);
+            return json.append("\n}").toString();
+        }
+
+        private static void appendLatency(StringBuilder json, LatencyHistogram histogram) {
+            json.append("{\"mean\": ").append(format(histogram.getMean()));
+            for (double percentile : PERCENTILES) {
+                json.append(", \"p").append(formatPercentile(percentile)).append("\": ")
+                        .append(histogram.getValueAtPercentile(percentile));
+            }
+            json.append(", \"max\": ").append(histogram.getMax()).append('}');
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+
+        private static String formatPercentile(double percentile) {
+            return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+        }
+    }
+
+    private static void printUsage(PrintStream out) {
+        out.println("Usage: java -cp ... webserver.LoadGenerator [options]");
+        out.println("       java -jar earlybirdwebserver.jar --load-test [options]");
+        out.println();
+        out.println("  --host, --port            server to load (default 127.0.0.1:8000)");
+        out.println("  --root DIR                request every file under this web root");
+        out.println("  --files FILE              request mix from a list: one path per line, optional weight");
+        out.println("  --concurrency N           connections, one thread each (default 16)");
+        out.println("  --duration S, --warmup S  measured seconds and unrecorded warmup seconds (default 30, 5)");
+        out.println("  --rate R                  open loop at R requests/s, latency from the scheduled time;");
+        out.println("                            without it each connection sends as fast as it gets answers");
+        out.println("  --keep-alive true|false   reuse connections (default true)");
+        out.println("  --timeout MS              connect and read timeout (default 10000)");
+        out.println("  --seed N                  request mix seed (default 1)");
+        out.println("  --json FILE               also write the report as JSON (- for stdout)");
+    }
+}
@@ -0,0 +1,112 @@
+package webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Membaca baris baru dari file log harian secara bertahap: posisi terakhir diingat,
+// sehingga setiap polling hanya membaca byte yang ditambahkan sejak polling sebelumnya.
+public class LogTailer {
+    private static final int INITIAL_BACKLOG_BYTES = 64 * 1024; // isi lama yang ditampilkan saat mulai
+    private static final int MAX_BYTES_PER_POLL = 1024 * 1024; // batas baca per polling agar UI tidak macet
+
+    private final Path logsDir;
+    private Path currentFile;
+    private long offset;
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream(); // baris yang belum lengkap
+
+    public LogTailer(String logsPath) {
+        this.logsDir = Paths.get(logsPath);
+    }
+
+    // Mengembalikan baris lengkap yang ditulis sejak polling terakhir
+    public List<String> poll() {
+        List<String> lines = new ArrayList<>();
+        Path todayFile = logsDir.resolve(LocalDate.now() + ".log");
+        try {
+            if (currentFile == null) {
+                open(todayFile, true);
+            } else if (!todayFile.equals(currentFile)) {
+                // Rotasi tengah malam: sisa file kemarin dibaca dulu, lalu pindah ke file baru dari awal
+                readNewLines(lines);
+                open(todayFile, false);
+            }
+            readNewLines(lines);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return lines;
+    }
+
+    private void open(Path file, boolean skipBacklog) throws IOException {
+        currentFile = file;
+        offset = 0;
+        partialLine.reset();
+        if (skipBacklog && Files.exists(file)) {
+            // Hanya bagian akhir file yang ditampilkan, dimulai dari awal baris berikutnya
+            long size = Files.size(file);
+            if (size > INITIAL_BACKLOG_BYTES) {
+                offset = size - INITIAL_BACKLOG_BYTES;
+                skipToNextLine();
+            }
+        }
+    }
+
+    private void readNewLines(List<String> lines) throws IOException {
+        if (!Files.exists(currentFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(currentFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < offset) {
+                // File dipotong atau diganti, mulai lagi dari awal
+                offset = 0;
+                partialLine.reset();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(MAX_BYTES_PER_POLL, size - offset));
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset + buffer.position());
+                if (read <= 0) {
+                    break;
+                }
+            }
+            offset += buffer.position();
+            byte[] data = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < buffer.position(); i++) {
+                if (data[i] == '\n') {
+                    partialLine.write(data, lineStart, i - lineStart);
+                    lines.add(partialLine.toString(StandardCharsets.UTF_8));
+                    partialLine.reset();
+                    lineStart = i + 1;
+                }
+            }
+            partialLine.write(data, lineStart, buffer.position() - lineStart);
+        }
+    }
+
+    private void skipToNextLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(currentFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            while (channel.read(buffer, offset) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    offset++;
+                    if (buffer.get() == '\n') {
+                        return;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+    }
+}
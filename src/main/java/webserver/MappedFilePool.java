@@ -0,0 +1,247 @@
+package webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pool bersama berisi mapping read-only untuk file yang terlalu besar untuk cache heap tetapi sering diminta.
+// File baru dipetakan setelah diminta minRequests kali tanpa jeda lebih lama dari idleTimeoutMillis, sehingga
+// unduhan sekali jalan tetap dikirim dengan transferTo tanpa memakai ruang alamat. Request yang bersamaan
+// menulis halaman off-heap yang sama ke socket masing-masing tanpa menyalinnya ke heap.
+// Setiap pemakaian memegang satu referensi; hanya mapping yang sedang tidak dipakai yang dibuang, baik karena
+// total ukurannya melewati batas maupun karena lama tidak diminta. MappedByteBuffer tidak bisa di-unmap
+// secara eksplisit, jadi mapping yang dibuang baru benar-benar dilepas saat buffer-nya dikumpulkan GC.
+public class MappedFilePool {
+    private static final int MAX_COUNTED_FILES = 4096;
+
+    private final long maxBytes; // total ukuran file yang boleh dipetakan sekaligus
+    private final long maxFileSize; // file lebih besar dari ini tidak dipetakan
+    private final long idleTimeoutMillis; // mapping yang tidak diminta selama ini dibuang
+    private final int minRequests; // jumlah request sebelum file dianggap cukup sering diminta untuk dipetakan
+    // Urutan akses untuk LRU
+    private final LinkedHashMap<Path, Mapping> mappings = new LinkedHashMap<>(64, 0.75f, true);
+    // Jumlah request file yang belum dipetakan; yang paling lama tidak diminta dibuang lebih dulu
+    private final LinkedHashMap<Path, RequestCount> requestCounts = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Path, RequestCount> eldest) {
+            return size() > MAX_COUNTED_FILES;
+        }
+    };
+    private long currentBytes;
+    private volatile boolean running;
+    private Thread sweeperThread;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder remaps = new LongAdder();
+
+    public MappedFilePool(long maxBytes, long maxFileSize, long idleTimeoutMillis, int minRequests) {
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE); // batas satu MappedByteBuffer
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.minRequests = Math.max(1, minRequests);
+    }
+
+    // Memulai thread yang membuang mapping menganggur, sekali per detik
+    public void start() {
+        running = true;
+        sweeperThread = new Thread(this::sweepLoop, "mapped-file-sweeper");
+        sweeperThread.setDaemon(true);
+        sweeperThread.start();
+    }
+
+    // Satu file yang dipetakan. Pemegang referensi wajib memanggil release tepat sekali setelah selesai menulis.
+    public final class Mapping {
+        private final Path path;
+        private final long size;
+        private final long lastModified;
+        private final MappedByteBuffer buffer;
+        private int references; // dijaga oleh lock pool
+        private long lastUsed;
+
+        private Mapping(Path path, long size, long lastModified, MappedByteBuffer buffer) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.buffer = buffer;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        // Potongan isi file sebagai buffer sendiri sehingga posisi baca setiap request terpisah
+        public ByteBuffer slice(long position, long count) {
+            return buffer.slice((int) position, (int) count);
+        }
+
+        public void release() {
+            MappedFilePool.this.release(this);
+        }
+    }
+
+    private static final class RequestCount {
+        int count;
+        long lastRequested;
+    }
+
+    public boolean isPoolable(long size) {
+        return size > 0 && size <= maxFileSize && size <= maxBytes;
+    }
+
+    // Mengambil mapping file ini dan menambah referensinya; null jika file tidak masuk pool, belum cukup sering
+    // diminta, berubah ukuran saat dibuka, atau semua ruang pool sedang dipakai. Ukuran dan waktu modifikasi dari
+    // pemanggil dipakai untuk mengenali file yang sudah berubah sehingga perlu dipetakan ulang.
+    public synchronized Mapping acquire(Path path, long size, long lastModified) throws IOException {
+        if (!isPoolable(size)) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Path key = path.toAbsolutePath().normalize();
+        Mapping mapping = mappings.get(key);
+        if (mapping != null && (mapping.size != size || mapping.lastModified != lastModified)) {
+            // Request yang masih menulis mapping lama tetap memegangnya sampai selesai
+            mappings.remove(key);
+            currentBytes -= mapping.size;
+            remaps.increment();
+            mapping = null;
+        }
+        if (mapping != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            if (!isHot(key, now)) {
+                return null;
+            }
+            if (!makeRoom(size)) {
+                return null;
+            }
+            mapping = map(key, size, lastModified);
+            if (mapping == null) {
+                return null;
+            }
+            mappings.put(key, mapping);
+            requestCounts.remove(key);
+            currentBytes += size;
+        }
+        mapping.references++;
+        mapping.lastUsed = now;
+        return mapping;
+    }
+
+    // Menghitung request file yang belum dipetakan; hitungan mulai dari awal jika jedanya melewati idle timeout
+    private boolean isHot(Path key, long now) {
+        if (minRequests <= 1) {
+            return true;
+        }
+        RequestCount requests = requestCounts.get(key);
+        if (requests == null || now - requests.lastRequested > idleTimeoutMillis) {
+            requests = new RequestCount();
+            requestCounts.put(key, requests);
+        }
+        requests.count++;
+        requests.lastRequested = now;
+        return requests.count >= minRequests;
+    }
+
+    private synchronized void release(Mapping mapping) {
+        mapping.references--;
+        mapping.lastUsed = System.currentTimeMillis();
+    }
+
+    public void close() {
+        running = false;
+        if (sweeperThread != null) {
+            sweeperThread.interrupt();
+        }
+        synchronized (this) {
+            mappings.clear();
+            requestCounts.clear();
+            currentBytes = 0;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getRemaps() {
+        return remaps.sum();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getMappingCount() {
+        return mappings.size();
+    }
+
+    // Memetakan file hanya jika ukurannya masih sama dengan yang sudah dikirim di header
+    private Mapping map(Path path, long size, long lastModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() != size) {
+                return null;
+            }
+            return new Mapping(path, size, lastModified, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    // Membuang mapping yang paling lama tidak diminta sampai file baru muat; mapping yang sedang dipakai dilewati
+    private boolean makeRoom(long size) {
+        Iterator<Mapping> iterator = mappings.values().iterator();
+        while (currentBytes + size > maxBytes && iterator.hasNext()) {
+            Mapping eldest = iterator.next();
+            if (eldest.references == 0) {
+                iterator.remove();
+                currentBytes -= eldest.size;
+                evictions.increment();
+            }
+        }
+        return currentBytes + size <= maxBytes;
+    }
+
+    private void sweepLoop() {
+        while (running) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            evictIdle(System.currentTimeMillis());
+        }
+    }
+
+    private synchronized void evictIdle(long now) {
+        Iterator<Mapping> iterator = mappings.values().iterator();
+        while (iterator.hasNext()) {
+            Mapping mapping = iterator.next();
+            if (mapping.references == 0 && now - mapping.lastUsed > idleTimeoutMillis) {
+                iterator.remove();
+                currentBytes -= mapping.size;
+                evictions.increment();
+            }
+        }
+        requestCounts.values().removeIf(requests -> now - requests.lastRequested > idleTimeoutMillis);
+    }
+}
@@ -0,0 +1,663 @@
+package webserver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Engine non-blocking: satu atau beberapa thread acceptor dan beberapa event loop berbasis Selector
+// yang melayani banyak koneksi sekaligus tanpa satu thread per koneksi. Event loop hanya membaca, mengurai,
+// menulis, dan menjawab request yang isinya sudah ada di memori (cache file, metrik). Request lain yang bisa
+// menunggu disk (cache miss, kompresi, daftar direktori, mapping file) dikerjakan virtual thread, lalu
+// hasilnya dikembalikan ke event loop untuk ditulis.
+public class NioServerEngine {
+    private final WebServer webServer;
+    private final int port;
+    private final EventLoop[] eventLoops;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    // Koneksi yang sudah pindah ke HTTP/2 dan dilayani thread blocking sendiri di luar event loop
+    private final Set<SocketChannel> http2Channels = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("nio-worker-", 0).factory());
+    private ServerSocketChannel[] serverChannels;
+
+    public NioServerEngine(WebServer webServer, int port, int eventLoopThreads) {
+        this.webServer = webServer;
+        this.port = port;
+        this.eventLoops = new EventLoop[Math.max(1, eventLoopThreads)];
+    }
+
+    // Menjalankan event loop lalu menerima koneksi di thread pemanggil sampai engine dihentikan.
+    // Acceptor ke-i hanya membagikan koneksi ke event loop i, i+N, i+2N, ... sehingga setiap acceptor
+    // punya kelompok event loop sendiri dan tidak ada acceptor yang berebut event loop.
+    public void start() throws IOException {
+        running.set(true);
+        int acceptors = Math.min(Math.max(1, webServer.getAcceptorThreads()), eventLoops.length);
+        serverChannels = WebServer.openListeners(port, acceptors);
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop(Selector.open());
+            Thread thread = new Thread(eventLoops[i], "nio-event-loop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        System.out.println("Web server (NIO, " + eventLoops.length + " event loops, "
+                + WebServer.describeListeners(serverChannels) + ") started on port " + port);
+
+        for (int i = 1; i < acceptors; i++) {
+            int acceptor = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    acceptLoop(acceptor, acceptors);
+                } catch (IOException e) {
+                    if (running.get()) {
+                        e.printStackTrace();
+                        webServer.stopServer();
+                    }
+                }
+            }, "nio-acceptor-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        acceptLoop(0, acceptors);
+    }
+
+    private void acceptLoop(int acceptor, int acceptors) throws IOException {
+        ServerSocketChannel serverChannel = serverChannels[acceptor];
+        AdmissionController admission = webServer.getAdmission();
+        int next = acceptor;
+        while (running.get()) {
+            SocketChannel channel = serverChannel.accept();
+            String clientAddress = AdmissionController.addressOf(channel);
+            AdmissionController.Rejection rejection = admission.tryAcquireConnection(clientAddress);
+            if (rejection != null) {
+                admission.shed(channel, rejection);
+                continue;
+            }
+            // Koneksi dibagi rata ke event loop milik acceptor ini secara round-robin
+            eventLoops[next].register(channel, clientAddress);
+            next += acceptors;
+            if (next >= eventLoops.length) {
+                next = acceptor;
+            }
+        }
+    }
+
+    public void stop() {
+        running.set(false);
+        WebServer.closeListeners(serverChannels);
+        for (EventLoop loop : eventLoops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+        for (SocketChannel channel : http2Channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        workers.shutdownNow();
+    }
+
+    // Satu thread yang memproses baca, parsing, dan tulis untuk sekumpulan koneksi
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Connection> pending = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // hasil worker yang harus diteruskan
+        private final List<Connection> handoffs = new ArrayList<>();
+        private long lastIdleCheck = System.currentTimeMillis();
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel, String clientAddress) {
+            pending.add(new Connection(this, channel, clientAddress));
+            selector.wakeup();
+        }
+
+        // Menjalankan task di thread event loop ini; dipanggil worker saat respons-nya sudah siap
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void shutdown() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running.get()) {
+                    selector.select(1000);
+                    registerPending();
+                    runTasks();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                        if (connection.handedOff && !connection.closed) {
+                            handoffs.add(connection);
+                        }
+                    }
+                    startHandoffs();
+                    closeIdleConnections();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        private void registerPending() {
+            Connection connection;
+            while ((connection = pending.poll()) != null) {
+                webServer.getMetrics().connectionOpened();
+                try {
+                    connection.channel.configureBlocking(false);
+                    connection.key = connection.channel.register(selector, SelectionKey.OP_READ, connection);
+                } catch (IOException e) {
+                    connection.close();
+                }
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        // Channel baru bisa dijadikan blocking setelah key-nya yang dibatalkan benar-benar dilepas selector,
+        // yaitu pada operasi select berikutnya
+        private void startHandoffs() throws IOException {
+            if (handoffs.isEmpty()) {
+                return;
+            }
+            selector.selectNow();
+            for (Connection connection : handoffs) {
+                connection.startHttp2();
+            }
+            handoffs.clear();
+        }
+
+        // Memeriksa batas waktu koneksi paling sering sekali per detik: idle keep-alive, header yang dikirim
+        // terlalu lambat (dijawab 408), dan respons yang tidak dibaca klien (ditutup)
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleCheck < 1000) {
+                return;
+            }
+            lastIdleCheck = now;
+            AdmissionController admission = webServer.getAdmission();
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (connection.busy) {
+                    // Worker masih menyiapkan respons; waktu itu bukan klien yang diam
+                    continue;
+                }
+                if (!connection.writeQueue.isEmpty()) {
+                    if (now - connection.lastActive > webServer.getWriteTimeout()) {
+                        admission.record(AdmissionController.Rejection.WRITE_TIMEOUT);
+                        connection.close();
+                    }
+                } else if (connection.headStarted != 0) {
+                    if (now - connection.headStarted > webServer.getReadTimeout()) {
+                        admission.record(AdmissionController.Rejection.READ_TIMEOUT);
+                        connection.rejectSlowRequest();
+                    }
+                } else if (now - connection.lastActive > webServer.getKeepAliveTimeout()) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    // Status satu koneksi: parser dengan buffer bacanya, antrean respons, dan handler yang memproses request-nya
+    private class Connection {
+        private final EventLoop loop;
+        private final SocketChannel channel;
+        private final HttpRequestHandler handler;
+        private final HttpRequestParser parser;
+        private final String clientAddress;
+        private final Queue<PendingWrite> writeQueue = new ArrayDeque<>();
+        private SelectionKey key;
+        private long lastActive = System.currentTimeMillis();
+        private long headStarted; // kapan byte pertama request yang belum lengkap datang, 0 jika tidak ada
+        private boolean closeAfterWrite;
+        private boolean closed;
+        private boolean prefaceChecked; // byte pertama koneksi sudah diperiksa apakah preface HTTP/2
+        private boolean handedOff; // koneksi diserahkan ke Http2Connection, event loop tidak menyentuhnya lagi
+        private boolean upgrade; // HTTP/2 lewat Upgrade: h2c, bukan prior knowledge
+        // Request saat ini sedang dikerjakan worker: parser dan handler miliknya sampai hasilnya kembali,
+        // jadi event loop tidak membaca atau mengurai koneksi ini dulu
+        private boolean busy;
+
+        Connection(EventLoop loop, SocketChannel channel, String clientAddress) {
+            this.loop = loop;
+            this.channel = channel;
+            this.clientAddress = clientAddress;
+            this.handler = new HttpRequestHandler(clientAddress, webServer);
+            this.parser = new HttpRequestParser(webServer.getMaxRequestLineLength(), webServer.getMaxHeaderBytes());
+        }
+
+        void onReadable() throws IOException {
+            int read = parser.read(channel);
+            if (read < 0) {
+                // Klien selesai mengirim, request yang tersisa tetap dijawab dulu
+                closeAfterWrite = true;
+            }
+            lastActive = System.currentTimeMillis();
+            if (!prefaceChecked && webServer.isHttp2Enabled()) {
+                int match = parser.matchPrefix(Http2Connection.PREFACE);
+                if (match == 0 && read >= 0) {
+                    if (parser.hasBufferedInput() && headStarted == 0) {
+                        headStarted = System.currentTimeMillis();
+                    }
+                    return; // belum cukup byte untuk membedakan HTTP/2 dari HTTP/1.1
+                }
+                prefaceChecked = true;
+                if (match > 0) {
+                    handOff(false);
+                    return;
+                }
+            }
+            prefaceChecked = true;
+            processRequests();
+            onWritable();
+        }
+
+        // Menjawab semua request lengkap yang sudah ada di buffer sesuai urutan datangnya
+        private void processRequests() throws IOException {
+            while (true) {
+                QueuedResponseOutput response = new QueuedResponseOutput(writeQueue);
+                try {
+                    if (!parser.parse()) {
+                        if (parser.hasBufferedInput() && headStarted == 0) {
+                            headStarted = System.currentTimeMillis();
+                        }
+                        return;
+                    }
+                    if (webServer.isHttp2Enabled() && Http2Connection.isUpgradeRequest(parser)) {
+                        handOff(true);
+                        return;
+                    }
+                    if (!handler.isServedFromMemory(parser)) {
+                        dispatch();
+                        return;
+                    }
+                    boolean open = handler.handleRequest(parser, response);
+                    parser.next();
+                    if (!open) {
+                        closeAfterWrite = true;
+                    }
+                } catch (HttpParseException e) {
+                    handler.rejectRequest(e, response);
+                    closeAfterWrite = true;
+                }
+                response.finish();
+                headStarted = 0;
+                if (closeAfterWrite) {
+                    parser.next(); // sisa byte setelah request terakhir tidak akan dijawab
+                    return;
+                }
+            }
+        }
+
+        // Request yang mungkin menunggu disk dijawab worker ke antrean tulis sendiri; request pipelined
+        // berikutnya baru diurai setelah hasilnya kembali supaya urutan respons tetap sama
+        private void dispatch() {
+            busy = true;
+            headStarted = 0;
+            Queue<PendingWrite> responseWrites = new ArrayDeque<>();
+            try {
+                workers.execute(() -> {
+                    boolean open = false;
+                    boolean failed = false;
+                    try {
+                        QueuedResponseOutput response = new QueuedResponseOutput(responseWrites);
+                        open = handler.handleRequest(parser, response);
+                        response.finish();
+                    } catch (IOException | RuntimeException e) {
+                        e.printStackTrace();
+                        failed = true;
+                    }
+                    boolean keepOpen = open && !failed;
+                    boolean failedRequest = failed;
+                    loop.execute(() -> onHandled(responseWrites, keepOpen, failedRequest));
+                });
+            } catch (RejectedExecutionException e) {
+                // Engine sedang berhenti
+                busy = false;
+                close();
+            }
+        }
+
+        // Dipanggil event loop saat worker selesai: respons masuk antrean tulis lalu koneksi lanjut seperti biasa
+        private void onHandled(Queue<PendingWrite> responseWrites, boolean open, boolean failed) {
+            busy = false;
+            if (closed || failed) {
+                PendingWrite pending;
+                while ((pending = responseWrites.poll()) != null) {
+                    pending.release();
+                }
+                close();
+                return;
+            }
+            writeQueue.addAll(responseWrites);
+            parser.next();
+            if (!open) {
+                closeAfterWrite = true;
+            }
+            if (closeAfterWrite) {
+                parser.next(); // sisa byte setelah request terakhir tidak akan dijawab
+            }
+            lastActive = System.currentTimeMillis();
+            try {
+                onWritable();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        // Request yang header-nya tidak selesai dalam batas waktu baca dijawab 408 lalu koneksinya ditutup
+        void rejectSlowRequest() {
+            try {
+                QueuedResponseOutput response = new QueuedResponseOutput(writeQueue);
+                handler.rejectRequest(new HttpParseException(408, "Request Timeout",
+                        "Header request tidak selesai dalam batas waktu baca"), response);
+                response.finish();
+                closeAfterWrite = true;
+                headStarted = 0;
+                parser.next();
+                onWritable();
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        void onWritable() throws IOException {
+            if (handedOff) {
+                return;
+            }
+            lastActive = System.currentTimeMillis(); // socket bisa ditulis lagi, berarti klien masih membaca
+            while (!writeQueue.isEmpty()) {
+                PendingWrite pending = writeQueue.peek();
+                if (!pending.writeTo(channel)) {
+                    // Socket penuh, lanjut menulis saat siap lagi dan berhenti membaca dulu
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return;
+                }
+                writeQueue.poll().release();
+            }
+            lastActive = System.currentTimeMillis();
+            if (busy) {
+                // Respons sebelumnya sudah terkirim, baca dan tulis berikutnya menunggu hasil worker
+                key.interestOps(0);
+            } else if (closeAfterWrite) {
+                close();
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+                if (parser.hasBufferedInput()) {
+                    // Request pipelined yang tertahan selama menunggu tulis diproses sekarang
+                    processRequests();
+                    if (!writeQueue.isEmpty() || closeAfterWrite || busy) {
+                        onWritable();
+                    }
+                }
+            }
+        }
+
+        // HTTP/2 memakai thread per koneksi seperti engine blocking: key dilepas dari selector dan
+        // sisa koneksinya dilayani Http2Connection di virtual thread
+        private void handOff(boolean upgrade) {
+            this.upgrade = upgrade;
+            handedOff = true;
+            headStarted = 0;
+            key.cancel();
+        }
+
+        // Dipanggil event loop setelah key-nya lepas dari selector
+        void startHttp2() {
+            try {
+                channel.configureBlocking(true);
+            } catch (IOException e) {
+                close();
+                return;
+            }
+            http2Channels.add(channel);
+            Thread.ofVirtual().name("h2-" + clientAddress).start(this::serveHttp2);
+        }
+
+        private void serveHttp2() {
+            Socket socket = channel.socket();
+            WriteTimeoutWatchdog.Guard writeGuard = webServer.getWriteWatchdog().register(socket);
+            try {
+                // Respons HTTP/1.1 untuk request sebelum Upgrade yang masih antre dikirim lebih dulu
+                PendingWrite pending;
+                while ((pending = writeQueue.poll()) != null) {
+                    writeGuard.begin();
+                    try {
+                        pending.writeTo(channel);
+                    } finally {
+                        writeGuard.end();
+                        pending.release();
+                    }
+                }
+                OutputStream out = new BufferedOutputStream(writeGuard.wrap(socket.getOutputStream()));
+                new Http2Connection(webServer, socket, clientAddress, parser, socket.getInputStream(), out)
+                        .serve(upgrade);
+            } catch (SocketTimeoutException e) {
+                // Koneksi idle melewati batas waktu keep-alive, langsung ditutup
+            } catch (IOException e) {
+                if (!writeGuard.isTimedOut() && running.get()) {
+                    e.printStackTrace();
+                }
+            } finally {
+                writeGuard.close();
+                http2Channels.remove(channel);
+                close();
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            webServer.getMetrics().connectionClosed();
+            webServer.getAdmission().connectionClosed(clientAddress);
+            if (key != null) {
+                key.cancel();
+            }
+            PendingWrite pending;
+            while ((pending = writeQueue.poll()) != null) {
+                pending.release();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Potongan respons yang menunggu ditulis ke socket non-blocking
+    private interface PendingWrite {
+        // Menulis sebanyak mungkin, true jika potongan ini sudah terkirim semua
+        boolean writeTo(SocketChannel channel) throws IOException;
+
+        void release();
+    }
+
+    private static class BufferWrite implements PendingWrite {
+        private final ByteBuffer buffer;
+
+        BufferWrite(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    // Potongan file dari MappedFilePool; referensi mapping dilepas setelah terkirim atau saat koneksi ditutup
+    private static class MappedWrite implements PendingWrite {
+        private final MappedFilePool.Mapping mapping;
+        private final ByteBuffer buffer;
+
+        MappedWrite(MappedFilePool.Mapping mapping, ByteBuffer buffer) {
+            this.mapping = mapping;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            channel.write(buffer);
+            return !buffer.hasRemaining();
+        }
+
+        @Override
+        public void release() {
+            mapping.release();
+        }
+    }
+
+    // Bagian file yang dikirim dengan transferTo saat socket siap, file baru dibuka saat mulai dikirim
+    private static class FileRegionWrite implements PendingWrite {
+        private final Path path;
+        private long position;
+        private long remaining;
+        private final FileChannel file;
+
+        // File dibuka di thread yang menyiapkan respons (worker), event loop hanya memanggil transferTo
+        FileRegionWrite(Path path, long position, long count) throws IOException {
+            this.path = path;
+            this.position = position;
+            this.remaining = count;
+            this.file = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        @Override
+        public boolean writeTo(SocketChannel channel) throws IOException {
+            while (remaining > 0) {
+                long n = file.transferTo(position, remaining, channel);
+                if (n == 0) {
+                    if (position >= file.size()) {
+                        throw new IOException("File berubah ukuran saat dikirim: " + path);
+                    }
+                    return false;
+                }
+                position += n;
+                remaining -= n;
+            }
+            return true;
+        }
+
+        @Override
+        public void release() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Output respons untuk engine NIO: byte biasa dikumpulkan di memori, isi file dicatat sebagai region
+    private static class QueuedResponseOutput extends ResponseOutputStream {
+        private final ByteArrayOutputStream buffer;
+        private final Queue<PendingWrite> queue;
+
+        QueuedResponseOutput(Queue<PendingWrite> queue) {
+            this(new ByteArrayOutputStream(), queue);
+        }
+
+        private QueuedResponseOutput(ByteArrayOutputStream buffer, Queue<PendingWrite> queue) {
+            super(buffer, null);
+            this.buffer = buffer;
+            this.queue = queue;
+        }
+
+        @Override
+        public void transferFile(Path path, long position, long count) throws IOException {
+            finish();
+            queue.add(new FileRegionWrite(path, position, count));
+            countTransferred(count);
+        }
+
+        // MappedWrite menulis mapping langsung ke SocketChannel koneksi
+        @Override
+        public boolean canWriteMapped() {
+            return true;
+        }
+
+        @Override
+        public void writeMapped(MappedFilePool.Mapping mapping, long position, long count) throws IOException {
+            finish();
+            queue.add(new MappedWrite(mapping, mapping.slice(position, count)));
+            countTransferred(count);
+        }
+
+        // Memindahkan byte yang sudah terkumpul ke antrean tulis
+        void finish() throws IOException {
+            flush();
+            if (buffer.size() > 0) {
+                queue.add(new BufferWrite(ByteBuffer.wrap(buffer.toByteArray())));
+                buffer.reset();
+            }
+        }
+    }
+}
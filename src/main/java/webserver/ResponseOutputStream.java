@@ -0,0 +1,123 @@
+package webserver;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Output respons yang selain menulis byte biasa juga bisa mengirim isi file langsung dari FileChannel.
+// Jika socket-nya punya channel, isi file dikirim dengan transferTo (sendfile di Linux) tanpa melewati heap.
+public class ResponseOutputStream extends DataOutputStream {
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel; // channel socket untuk zero-copy, null jika tidak tersedia
+    private long transferred; // byte yang dikirim lewat transferFile sejak reset terakhir
+    private WriteTimeoutWatchdog.Guard writeGuard; // pengawas batas waktu tulis untuk transferTo, boleh null
+
+    public ResponseOutputStream(OutputStream out, WritableByteChannel channel) {
+        super(out);
+        this.channel = channel;
+    }
+
+    // Mengirim count byte isi file mulai dari position
+    public void transferFile(Path path, long position, long count) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel != null) {
+                // Header yang masih di buffer harus keluar dulu sebelum isi file
+                flush();
+                long sent = 0;
+                if (writeGuard != null) {
+                    writeGuard.begin();
+                }
+                try {
+                    while (sent < count) {
+                        long n = file.transferTo(position + sent, count - sent, channel);
+                        if (n <= 0) {
+                            throw new IOException("File berubah ukuran saat dikirim: " + path);
+                        }
+                        sent += n;
+                    }
+                } finally {
+                    if (writeGuard != null) {
+                        writeGuard.end();
+                    }
+                }
+            } else {
+                // Tanpa channel, isi file disalin lewat buffer kecil sehingga heap tetap konstan
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, Math.max(1, count)));
+                long sent = 0;
+                while (sent < count) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), count - sent));
+                    int n = file.read(buffer, position + sent);
+                    if (n < 0) {
+                        throw new IOException("File berubah ukuran saat dikirim: " + path);
+                    }
+                    out.write(buffer.array(), 0, n);
+                    sent += n;
+                }
+            }
+            countTransferred(count);
+        }
+    }
+
+    // Mapping hanya berguna jika ditulis langsung ke channel socket: kernel yang menyalinnya, dan file yang
+    // dipotong saat dikirim menjadi IOException. Tanpa channel (misalnya stream HTTP/2) isi mapping harus disalin
+    // di Java, yang berakhir dengan InternalError (SIGBUS) untuk file yang dipotong.
+    public boolean canWriteMapped() {
+        return channel != null;
+    }
+
+    // Mengirim potongan file dari MappedFilePool. Referensi mapping-nya diambil alih dan dilepas setelah terkirim.
+    public void writeMapped(MappedFilePool.Mapping mapping, long position, long count) throws IOException {
+        if (channel == null) {
+            // Lihat canWriteMapped: isi file dibaca lewat FileChannel yang gagal dengan IOException
+            Path path = mapping.getPath();
+            mapping.release();
+            transferFile(path, position, count);
+            return;
+        }
+        try {
+            ByteBuffer buffer = mapping.slice(position, count);
+            flush();
+            if (writeGuard != null) {
+                writeGuard.begin();
+            }
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                if (writeGuard != null) {
+                    writeGuard.end();
+                }
+            }
+            countTransferred(count);
+        } finally {
+            mapping.release();
+        }
+    }
+
+    public void setWriteGuard(WriteTimeoutWatchdog.Guard writeGuard) {
+        this.writeGuard = writeGuard;
+    }
+
+    // Menghitung ulang byte terkirim dari nol, dipanggil di awal setiap request
+    public void resetBytesWritten() {
+        written = 0;
+        transferred = 0;
+    }
+
+    // Byte respons yang ditulis sejak reset terakhir, termasuk isi file yang dikirim lewat transferFile
+    public long bytesWritten() {
+        return size() + transferred;
+    }
+
+    protected void countTransferred(long count) {
+        transferred += count;
+    }
+}
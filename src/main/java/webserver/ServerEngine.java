@@ -0,0 +1,7 @@
+package webserver;
+
+// Pilihan engine untuk WebServer
+public enum ServerEngine {
+    BLOCKING, // satu thread dari thread pool per koneksi (perilaku awal)
+    NIO // beberapa event loop Selector untuk semua koneksi
+}
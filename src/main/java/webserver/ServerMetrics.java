@@ -0,0 +1,188 @@
+package webserver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Penghitung ringan untuk jalur request: jumlah request per status dan metode, byte terkirim,
+// koneksi aktif, dan histogram latensi. Bisa ditampilkan dalam format teks Prometheus.
+public class ServerMetrics {
+    private static final String PREFIX = "earlybird_";
+
+    private final LongAdder[] requestsByStatus = new LongAdder[600];
+    private final Map<String, LongAdder> requestsByMethod = new ConcurrentHashMap<>();
+    private final LongAdder totalRequests = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder totalConnections = new LongAdder();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LatencyHistogram latency = new LatencyHistogram(); // dalam mikrodetik
+    private final long startTime = System.currentTimeMillis();
+
+    public ServerMetrics() {
+        for (int i = 0; i < requestsByStatus.length; i++) {
+            requestsByStatus[i] = new LongAdder();
+        }
+    }
+
+    public void connectionOpened() {
+        totalConnections.increment();
+        activeConnections.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    // Dicatat setelah satu respons selesai ditulis
+    public void recordRequest(String method, int status, long bytes, long latencyNanos) {
+        totalRequests.increment();
+        if (status >= 100 && status < requestsByStatus.length) {
+            requestsByStatus[status].increment();
+        }
+        requestsByMethod.computeIfAbsent(normalizeMethod(method), key -> new LongAdder()).increment();
+        bytesSent.add(bytes);
+        latency.record(latencyNanos / 1000);
+    }
+
+    public long getTotalRequests() {
+        return totalRequests.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    // Jumlah request untuk satu kelas status, misalnya 2 untuk semua 2xx
+    public long getRequestsByStatusClass(int statusClass) {
+        long sum = 0;
+        for (int status = statusClass * 100; status < statusClass * 100 + 100 && status < requestsByStatus.length; status++) {
+            sum += requestsByStatus[status].sum();
+        }
+        return sum;
+    }
+
+    // Ringkasan singkat untuk panel di WebServerUI
+    public String summary() {
+        return String.format("Requests : %d%nActive connections : %d%n2xx: %d  3xx: %d  4xx: %d  5xx: %d%n"
+                        + "Latency p50: %.2f ms  p99: %.2f ms  p99.9: %.2f ms%nSent : %.1f MB",
+                getTotalRequests(), getActiveConnections(),
+                getRequestsByStatusClass(2), getRequestsByStatusClass(3),
+                getRequestsByStatusClass(4), getRequestsByStatusClass(5),
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0, getBytesSent() / (1024.0 * 1024.0));
+    }
+
+    // Format teks Prometheus (versi 0.0.4), termasuk penghitung cache dan log dari server
+    public String toPrometheus(WebServer server) {
+        StringBuilder text = new StringBuilder(4096);
+        header(text, "requests_total", "counter", "HTTP requests by status code");
+        for (int status = 100; status < requestsByStatus.length; status++) {
+            long count = requestsByStatus[status].sum();
+            if (count > 0) {
+                text.append(PREFIX).append("requests_total{status=\"").append(status).append("\"} ").append(count).append('\n');
+            }
+        }
+        header(text, "requests_by_method_total", "counter", "HTTP requests by method");
+        for (Map.Entry<String, LongAdder> entry : requestsByMethod.entrySet()) {
+            text.append(PREFIX).append("requests_by_method_total{method=\"").append(entry.getKey()).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+        metric(text, "bytes_sent_total", "counter", "Response bytes written", getBytesSent());
+        metric(text, "connections_total", "counter", "Accepted connections", totalConnections.sum());
+        metric(text, "active_connections", "gauge", "Currently open connections", getActiveConnections());
+
+        header(text, "request_duration_seconds", "summary", "Request latency");
+        double[] quantiles = {0.5, 0.9, 0.99, 0.999};
+        for (double quantile : quantiles) {
+            text.append(PREFIX).append("request_duration_seconds{quantile=\"").append(quantile).append("\"} ")
+                    .append(latency.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+        }
+        text.append(PREFIX).append("request_duration_seconds_sum ").append(latency.getSum() / 1e6).append('\n');
+        text.append(PREFIX).append("request_duration_seconds_count ").append(latency.getCount()).append('\n');
+
+        // Cache dan log dijumlahkan untuk semua virtual host
+        long cacheHits = 0;
+        long cacheMisses = 0;
+        long cacheEvictions = 0;
+        long cacheBytes = 0;
+        long logDropped = 0;
+        List<VirtualHost> hosts = server.getAllHosts();
+        for (VirtualHost host : hosts) {
+            StaticFileCache cache = host.getFileCache();
+            cacheHits += cache.getHits();
+            cacheMisses += cache.getMisses();
+            cacheEvictions += cache.getEvictions();
+            cacheBytes += cache.getCurrentBytes();
+            if (host.getAccessLog() != null) {
+                logDropped += host.getAccessLog().getDroppedCount();
+            }
+        }
+        metric(text, "file_cache_hits_total", "counter", "Static file cache hits", cacheHits);
+        metric(text, "file_cache_misses_total", "counter", "Static file cache misses", cacheMisses);
+        metric(text, "file_cache_evictions_total", "counter", "Static file cache evictions", cacheEvictions);
+        metric(text, "file_cache_bytes", "gauge", "Bytes held by the static file cache", cacheBytes);
+        MappedFilePool mappedFiles = server.getMappedFiles();
+        if (mappedFiles != null) {
+            metric(text, "mapped_files_hits_total", "counter", "Memory-mapped file pool hits", mappedFiles.getHits());
+            metric(text, "mapped_files_misses_total", "counter", "Memory-mapped file pool misses",
+                    mappedFiles.getMisses());
+            metric(text, "mapped_files_evictions_total", "counter", "Mappings dropped for size or idle time",
+                    mappedFiles.getEvictions());
+            metric(text, "mapped_files_remaps_total", "counter", "Mappings replaced after the file changed",
+                    mappedFiles.getRemaps());
+            metric(text, "mapped_files_bytes", "gauge", "Bytes of files currently mapped",
+                    mappedFiles.getCurrentBytes());
+        }
+        metric(text, "access_log_dropped_total", "counter", "Access log entries dropped on overflow", logDropped);
+        metric(text, "virtual_hosts", "gauge", "Configured virtual hosts besides the default", hosts.size() - 1);
+        AdmissionController admission = server.getAdmission();
+        if (admission != null) {
+            header(text, "rejections_total", "counter", "Connections and requests refused by admission control");
+            for (AdmissionController.Rejection rejection : AdmissionController.Rejection.values()) {
+                text.append(PREFIX).append("rejections_total{reason=\"").append(rejection.name().toLowerCase())
+                        .append("\"} ").append(admission.getRejections(rejection)).append('\n');
+            }
+            metric(text, "admitted_connections", "gauge", "Connections holding an admission slot",
+                    admission.getConnections());
+        }
+        metric(text, "uptime_seconds", "gauge", "Seconds since the server started",
+                (System.currentTimeMillis() - startTime) / 1000);
+        return text.toString();
+    }
+
+    private static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void metric(StringBuilder text, String name, String type, String help, long value) {
+        header(text, name, type, help);
+        text.append(PREFIX).append(name).append(' ').append(value).append('\n');
+    }
+
+    // Metode yang tidak dikenal digabung agar label tidak tumbuh tanpa batas
+    private static String normalizeMethod(String method) {
+        switch (method) {
+            case "GET":
+            case "HEAD":
+            case "POST":
+            case "PUT":
+            case "DELETE":
+            case "OPTIONS":
+            case "PATCH":
+                return method;
+            default:
+                return "OTHER";
+        }
+    }
+}
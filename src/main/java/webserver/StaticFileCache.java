@@ -0,0 +1,197 @@
+package webserver;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Cache di memori untuk file statis kecil di bawah web root, berisi header dan body yang siap dikirim.
+// Entri dibuang secara LRU saat melewati batas byte dan dihapus oleh FileChangeWatcher saat file berubah.
+public class StaticFileCache {
+    // Satu entri cache: header respons (tanpa header Connection dan baris kosong penutup) dan body-nya,
+    // ditambah varian gzip yang sudah dikompres untuk tipe teks (null untuk tipe lain). Validator file ikut
+    // disimpan supaya request berikutnya, termasuk yang bersyarat, bisa dijawab tanpa stat ke disk.
+    public static final class Entry {
+        final byte[] header;
+        final byte[] body;
+        final byte[] gzipHeader;
+        final byte[] gzipBody;
+        final long lastModified;
+        final String entityTag;
+        final String gzipEntityTag;
+        final String validators; // header untuk 304: ETag, Last-Modified, Cache-Control, dan Vary
+        final String gzipValidators;
+
+        Entry(byte[] header, byte[] body, byte[] gzipHeader, byte[] gzipBody, long lastModified, String entityTag,
+              String gzipEntityTag, String validators, String gzipValidators) {
+            this.header = header;
+            this.body = body;
+            this.gzipHeader = gzipHeader;
+            this.gzipBody = gzipBody;
+            this.lastModified = lastModified;
+            this.entityTag = entityTag;
+            this.gzipEntityTag = gzipEntityTag;
+            this.validators = validators;
+            this.gzipValidators = gzipValidators;
+        }
+
+        long weight() {
+            long weight = header.length + body.length;
+            if (gzipBody != null) {
+                weight += gzipHeader.length + gzipBody.length;
+            }
+            return weight;
+        }
+    }
+
+    private final Path root;
+    private final long maxBytes; // total byte maksimal yang boleh disimpan
+    private final long maxEntrySize; // ukuran file terbesar yang masih di-cache
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(64, 0.75f, true); // urutan akses untuk LRU
+    private long currentBytes;
+    private long generation; // bertambah setiap ada invalidasi, mencegah entri basi tersimpan
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private FileChangeWatcher watcher;
+    private volatile boolean watched; // isi cache hanya bisa dipercaya selama root-nya dipantau
+
+    public StaticFileCache(String webRoot, long maxBytes, long maxEntrySize) {
+        this.root = normalize(Paths.get(webRoot));
+        this.maxBytes = maxBytes;
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    // Mendaftarkan web root ke watcher bersama; cache yang tidak diberi ruang tidak perlu dipantau
+    public void start(FileChangeWatcher watcher) {
+        if (maxBytes <= 0) {
+            return;
+        }
+        this.watcher = watcher;
+        watched = watcher.register(this);
+    }
+
+    public void close() {
+        watched = false;
+        if (watcher != null) {
+            watcher.unregister(this);
+        }
+        clear();
+    }
+
+    public boolean isEnabled() {
+        return watched && maxBytes > 0;
+    }
+
+    public boolean isCacheable(long size) {
+        return isEnabled() && size <= maxEntrySize && size <= maxBytes;
+    }
+
+    public synchronized Entry get(Path path) {
+        Entry entry = entries.get(normalize(path));
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    // Entri untuk path ini tanpa menghitung miss; dipakai sebelum diketahui apakah path-nya file biasa
+    public synchronized Entry getIfPresent(Path path) {
+        Entry entry = entries.get(normalize(path));
+        if (entry != null) {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    // Tanpa menghitung hit atau miss dan tanpa mengubah urutan LRU
+    public synchronized boolean contains(Path path) {
+        return entries.containsKey(normalize(path));
+    }
+
+    // Nilai generasi saat ini, diambil sebelum membaca file dari disk
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Menyimpan entri hanya jika tidak ada invalidasi sejak file dibaca
+    public synchronized void put(Path path, Entry entry, long expectedGeneration) {
+        if (expectedGeneration != generation || !isCacheable(entry.body.length)) {
+            return;
+        }
+        Entry previous = entries.put(normalize(path), entry);
+        if (previous != null) {
+            currentBytes -= previous.weight();
+        }
+        currentBytes += entry.weight();
+
+        // Membuang entri yang paling lama tidak diakses sampai kembali di bawah batas
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            currentBytes -= eldest.weight();
+            evictions.increment();
+        }
+    }
+
+    // Menghapus entri untuk path ini beserta semua entri di bawahnya (jika path adalah direktori)
+    public synchronized void invalidate(Path path) {
+        Path normalized = normalize(path);
+        generation++;
+        Iterator<Map.Entry<Path, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Entry> entry = iterator.next();
+            if (entry.getKey().startsWith(normalized)) {
+                currentBytes -= entry.getValue().weight();
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+}
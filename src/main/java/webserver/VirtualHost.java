@@ -0,0 +1,115 @@
+package webserver;
+
+import java.util.Locale;
+
+// Satu situs yang dilayani WebServer berdasarkan header Host: web root, direktori log, dan anggaran cache
+// sendiri. Semua virtual host memakai listener, worker, dan pengaturan koneksi yang sama dari WebServer.
+public class VirtualHost {
+    private final String name; // nama host tanpa port, huruf kecil; kosong untuk host default
+    private final String webRoot;
+    private String logsPath;
+    private long cacheMaxBytes = 64L * 1024 * 1024; // batas total cache file statis host ini
+    private long cacheMaxFileSize = 1024 * 1024; // file lebih besar dari ini tidak di-cache
+    private long listingCacheMaxBytes = 8L * 1024 * 1024; // batas total cache halaman daftar direktori
+
+    // Dibuat ulang setiap kali host mulai dilayani
+    private volatile StaticFileCache fileCache;
+    private volatile DirectoryListingCache listingCache;
+    private volatile AccessLogWriter accessLog;
+
+    public VirtualHost(String name, String webRoot, String logsPath) {
+        this.name = normalizeName(name);
+        this.webRoot = webRoot;
+        this.logsPath = logsPath;
+        this.fileCache = new StaticFileCache(webRoot, 0, 0); // belum aktif sampai host dijalankan
+    }
+
+    // Menyiapkan cache dan log host ini di atas watcher dan penulis log bersama milik WebServer;
+    // dipanggil saat server start atau saat host ditambahkan. Host tidak membuat thread sendiri.
+    void start(FileChangeWatcher fileWatcher, AccessLogDispatcher logDispatcher) {
+        StaticFileCache cache = new StaticFileCache(webRoot, cacheMaxBytes, cacheMaxFileSize);
+        cache.start(fileWatcher);
+        fileCache = cache;
+        listingCache = new DirectoryListingCache(listingCacheMaxBytes);
+        accessLog = new AccessLogWriter(logsPath, logDispatcher);
+    }
+
+    // Request yang masih berjalan pada host ini tetap selesai; cache-nya hanya dikosongkan dan
+    // entri log yang datang setelah log-nya ditutup dibuang dan dihitung
+    void close() {
+        fileCache.close();
+        AccessLogWriter writer = accessLog;
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getWebRoot() {
+        return webRoot;
+    }
+
+    public String getLogsPath() {
+        return logsPath;
+    }
+
+    public void setLogsPath(String logsPath) {
+        this.logsPath = logsPath;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public long getCacheMaxFileSize() {
+        return cacheMaxFileSize;
+    }
+
+    public void setCacheMaxFileSize(long cacheMaxFileSize) {
+        this.cacheMaxFileSize = cacheMaxFileSize;
+    }
+
+    public long getListingCacheMaxBytes() {
+        return listingCacheMaxBytes;
+    }
+
+    public void setListingCacheMaxBytes(long listingCacheMaxBytes) {
+        this.listingCacheMaxBytes = listingCacheMaxBytes;
+    }
+
+    public StaticFileCache getFileCache() {
+        return fileCache;
+    }
+
+    public DirectoryListingCache getListingCache() {
+        return listingCache;
+    }
+
+    public AccessLogWriter getAccessLog() {
+        return accessLog;
+    }
+
+    // Nilai header Host menjadi kunci pencarian: huruf kecil, tanpa port dan tanpa titik di akhir.
+    // Alamat IPv6 seperti [::1]:8080 tetap memakai kurung siku.
+    static String normalizeName(String host) {
+        if (host == null) {
+            return "";
+        }
+        String name = host.trim().toLowerCase(Locale.ROOT);
+        int colon = name.lastIndexOf(':');
+        if (colon >= 0 && name.indexOf(']', colon) < 0 && (!name.startsWith("[") || name.charAt(colon - 1) == ']')) {
+            name = name.substring(0, colon);
+        }
+        if (name.endsWith(".")) {
+            name = name.substring(0, name.length() - 1);
+        }
+        return name;
+    }
+}
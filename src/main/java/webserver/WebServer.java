@@ -1,39 +1,135 @@
 package webserver;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class WebServer {
-    private static String webRoot = "./webroot";
     private int port;
-    private String logsPath;
-    private ExecutorService threadPool;
+    private final VirtualHost defaultHost; // dilayani untuk Host yang tidak terdaftar atau tanpa Host
+    private final Map<String, VirtualHost> virtualHosts = new ConcurrentHashMap<>(); // nama host -> situs
+    private boolean hostsStarted; // apakah cache dan log setiap host sudah disiapkan, dijaga oleh lock this
+    private final List<ExecutorService> threadPools = new CopyOnWriteArrayList<>(); // satu kelompok worker per acceptor
     private AtomicBoolean running;
-    private ServerSocket serverSocket;
+    private ServerSocketChannel[] serverChannels;
+    private int acceptorThreads = 1; // jumlah loop accept, masing-masing dengan socket listen sendiri jika didukung
+    private int keepAliveTimeout = 5000; // batas idle koneksi keep-alive dalam milidetik
+    private int maxKeepAliveRequests = 100; // jumlah maksimal request per koneksi
+    private ServerEngine engine = ServerEngine.BLOCKING;
+    private int eventLoopThreads = Runtime.getRuntime().availableProcessors(); // jumlah event loop engine NIO
+    private NioServerEngine nioEngine;
+    private ExecutionMode executionMode = ExecutionMode.CACHED;
+    private int maxWorkerThreads = 200; // jumlah thread untuk mode BOUNDED
+    private int workerQueueCapacity = 1000; // panjang antrean koneksi untuk mode BOUNDED
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final Map<String, String> cacheControlByExtension = new ConcurrentHashMap<>(); // Cache-Control per ekstensi
+    private String defaultCacheControl = "no-cache"; // untuk ekstensi yang tidak diatur
+    private int logQueueCapacity = 65536; // jumlah entri log yang boleh menunggu ditulis
+    private AccessLogWriter.OverflowPolicy logOverflowPolicy = AccessLogWriter.OverflowPolicy.DROP;
+    private long zeroCopyThreshold = 1024 * 1024; // file lebih besar dari ini dikirim dengan transferTo
+    private long mappedMaxBytes = 256L * 1024 * 1024; // batas total file yang dipetakan ke memori, 0 mematikan pool
+    private long mappedMaxFileSize = 16L * 1024 * 1024; // file lebih besar dari ini dikirim dengan transferTo
+    private int mappedIdleTimeout = 60000; // mapping yang tidak diminta selama ini dibuang, dalam milidetik
+    private int mappedMinRequests = 3; // file baru dipetakan setelah diminta sebanyak ini
+    private int maxRequestLineLength = HttpRequestParser.DEFAULT_MAX_REQUEST_LINE; // lebih dari ini dijawab 414
+    private int maxHeaderBytes = HttpRequestParser.DEFAULT_MAX_HEADER_BYTES; // lebih dari ini dijawab 431
+    private int maxConnections = 10000; // batas koneksi terbuka sekaligus, 0 berarti tanpa batas
+    private int maxConnectionsPerIp = 0; // batas koneksi per alamat IP, 0 berarti tanpa batas
+    private double requestRateLimit = 0; // request per detik per alamat IP, 0 berarti tanpa batas
+    private int requestBurst = 0; // ukuran token bucket, 0 berarti sama dengan laju per detik
+    private int retryAfterSeconds = 1; // nilai Retry-After untuk respons 503
+    private int readTimeout = 10000; // batas waktu menerima satu header request lengkap, dalam milidetik
+    private int writeTimeout = 30000; // batas waktu satu tulis ke socket yang macet, dalam milidetik
+    private boolean http2Enabled = true; // h2c lewat prior knowledge dan Upgrade: h2c
+    private AdmissionController admission;
+    private WriteTimeoutWatchdog writeWatchdog;
+    private MappedFilePool mappedFiles;
+    // Dipakai bersama semua host: satu thread pemantau web root dan satu thread penulis log akses
+    private FileChangeWatcher fileWatcher;
+    private AccessLogDispatcher logDispatcher;
 
     public WebServer(String webRoot, String logsPath, int port) {
-        WebServer.webRoot = webRoot;
-        this.logsPath = logsPath;
+        this.defaultHost = new VirtualHost("", webRoot, logsPath);
         this.port = port;
-        this.threadPool = Executors.newCachedThreadPool();
         this.running = new AtomicBoolean(false);
+
+        // Kebijakan awal: halaman HTML selalu divalidasi ulang, aset statis boleh disimpan lebih lama
+        cacheControlByExtension.put("html", "no-cache");
+        cacheControlByExtension.put("htm", "no-cache");
+        cacheControlByExtension.put("css", "public, max-age=3600");
+        cacheControlByExtension.put("jpg", "public, max-age=86400");
+        cacheControlByExtension.put("jpeg", "public, max-age=86400");
+        cacheControlByExtension.put("png", "public, max-age=86400");
+        cacheControlByExtension.put("gif", "public, max-age=86400");
     }
 
     public void start() {
         running.set(true);
+        synchronized (this) {
+            fileWatcher = new FileChangeWatcher();
+            fileWatcher.start();
+            logDispatcher = new AccessLogDispatcher(logQueueCapacity, logOverflowPolicy);
+            logDispatcher.start();
+            defaultHost.start(fileWatcher, logDispatcher);
+            for (VirtualHost host : virtualHosts.values()) {
+                host.start(fileWatcher, logDispatcher);
+            }
+            hostsStarted = true;
+        }
+        admission = new AdmissionController(maxConnections, maxConnectionsPerIp, requestRateLimit, requestBurst,
+                retryAfterSeconds);
+        writeWatchdog = new WriteTimeoutWatchdog(writeTimeout, admission);
+        writeWatchdog.start();
+        mappedFiles = new MappedFilePool(mappedMaxBytes, mappedMaxFileSize, mappedIdleTimeout, mappedMinRequests);
+        mappedFiles.start();
         try {
-            serverSocket = new ServerSocket(port);
-            System.out.println("Web server started on port " + port);
-            while (running.get()) {
-                Socket clientSocket = serverSocket.accept();
-                threadPool.execute(new HttpRequestHandler(clientSocket, logsPath, this));
+            if (engine == ServerEngine.NIO) {
+                nioEngine = new NioServerEngine(this, port, eventLoopThreads);
+                nioEngine.start();
+                return;
             }
+            // Socket dari ServerSocketChannel punya channel sendiri sehingga file besar bisa dikirim zero-copy
+            serverChannels = openListeners(port, acceptorThreads);
+            // Batas BOUNDED dibagi ke semua kelompok worker supaya totalnya tetap sama
+            int acceptors = serverChannels.length;
+            int workersPerGroup = Math.max(1, (maxWorkerThreads + acceptors - 1) / acceptors);
+            int queuePerGroup = Math.max(1, (workerQueueCapacity + acceptors - 1) / acceptors);
+            for (int i = 0; i < acceptors; i++) {
+                threadPools.add(executionMode.createExecutor(workersPerGroup, queuePerGroup));
+            }
+            System.out.println("Web server started on port " + port + " (" + executionMode + ", "
+                    + describeListeners(serverChannels) + ")");
+            // Acceptor pertama berjalan di thread pemanggil, sisanya di thread sendiri
+            for (int i = 1; i < acceptors; i++) {
+                ServerSocketChannel channel = serverChannels[i];
+                ExecutorService pool = threadPools.get(i);
+                Thread thread = new Thread(() -> {
+                    try {
+                        acceptLoop(channel, pool);
+                    } catch (IOException e) {
+                        if (running.get()) {
+                            e.printStackTrace();
+                            stopServer();
+                        }
+                    }
+                }, "http-acceptor-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            acceptLoop(serverChannels[0], threadPools.get(0));
         } catch (IOException e) {
             if (running.get()) {
                 e.printStackTrace();
@@ -43,32 +139,431 @@ public class WebServer {
         }
     }
 
+    private void acceptLoop(ServerSocketChannel serverChannel, ExecutorService threadPool) throws IOException {
+        while (running.get()) {
+            SocketChannel client = serverChannel.accept();
+            String clientAddress = AdmissionController.addressOf(client);
+            AdmissionController.Rejection rejection = admission.tryAcquireConnection(clientAddress);
+            if (rejection != null) {
+                admission.shed(client, rejection);
+                continue;
+            }
+            try {
+                threadPool.execute(new HttpRequestHandler(client.socket(), this));
+            } catch (RejectedExecutionException e) {
+                // Pool dan antrean penuh, koneksi dijawab 503 daripada menumpuk
+                admission.connectionClosed(clientAddress);
+                admission.shed(client, admission.record(AdmissionController.Rejection.OVERLOAD));
+            }
+        }
+    }
+
+    // Membuka socket listen untuk setiap acceptor. Dengan SO_REUSEPORT (Linux, BSD) setiap acceptor punya
+    // socket sendiri dan kernel membagi koneksi masuk ke semuanya; jika tidak didukung, semua acceptor
+    // memanggil accept() pada satu socket yang sama.
+    static ServerSocketChannel[] openListeners(int port, int count) throws IOException {
+        ServerSocketChannel[] channels = new ServerSocketChannel[Math.max(1, count)];
+        ServerSocketChannel first = ServerSocketChannel.open();
+        boolean reusePort = channels.length > 1
+                && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        try {
+            if (reusePort) {
+                first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            first.bind(new InetSocketAddress(port));
+            // Port 0 memilih port bebas; socket berikutnya harus memakai port yang sama
+            int boundPort = ((InetSocketAddress) first.getLocalAddress()).getPort();
+            channels[0] = first;
+            for (int i = 1; i < channels.length; i++) {
+                if (reusePort) {
+                    channels[i] = ServerSocketChannel.open();
+                    channels[i].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                    channels[i].bind(new InetSocketAddress(boundPort));
+                } else {
+                    channels[i] = first;
+                }
+            }
+            return channels;
+        } catch (IOException | RuntimeException e) {
+            closeListeners(channels);
+            first.close();
+            throw e;
+        }
+    }
+
+    static void closeListeners(ServerSocketChannel[] channels) {
+        if (channels == null) {
+            return;
+        }
+        for (ServerSocketChannel channel : channels) {
+            if (channel != null && channel.isOpen()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    static String describeListeners(ServerSocketChannel[] channels) {
+        if (channels.length == 1) {
+            return "1 acceptor";
+        }
+        return channels.length + " acceptors, " + (channels[0] != channels[1] ? "SO_REUSEPORT" : "shared socket");
+    }
+
     public void stopServer() {
         running.set(false);
-        if (serverSocket != null && !serverSocket.isClosed()) {
-            try {
-                serverSocket.close();
-            } catch (IOException e) {
-                e.printStackTrace();
+        if (nioEngine != null) {
+            nioEngine.stop();
+        }
+        closeListeners(serverChannels);
+        for (ExecutorService threadPool : threadPools) {
+            threadPool.shutdown();
+        }
+        threadPools.clear();
+        if (writeWatchdog != null) {
+            writeWatchdog.close();
+        }
+        if (admission != null) {
+            admission.close();
+        }
+        if (mappedFiles != null) {
+            mappedFiles.close();
+        }
+        synchronized (this) {
+            if (hostsStarted) {
+                hostsStarted = false;
+                defaultHost.close();
+                for (VirtualHost host : virtualHosts.values()) {
+                    host.close();
+                }
+                logDispatcher.close();
+                fileWatcher.close();
             }
         }
-        threadPool.shutdown();
         System.out.println("Web server stopped");
     }
 
+    // Menambah atau mengganti virtual host. Saat server berjalan host langsung dilayani tanpa
+    // menyentuh listener; host lama dengan nama yang sama ditutup setelah diganti.
+    public synchronized void addVirtualHost(VirtualHost host) {
+        if (host.getName().isEmpty()) {
+            throw new IllegalArgumentException("Nama virtual host tidak boleh kosong");
+        }
+        if (hostsStarted) {
+            host.start(fileWatcher, logDispatcher);
+        }
+        VirtualHost previous = virtualHosts.put(host.getName(), host);
+        if (previous != null && hostsStarted) {
+            previous.close();
+        }
+    }
+
+    // Menghapus virtual host; request berikutnya untuk nama ini dilayani host default
+    public synchronized boolean removeVirtualHost(String name) {
+        VirtualHost removed = virtualHosts.remove(VirtualHost.normalizeName(name));
+        if (removed == null) {
+            return false;
+        }
+        if (hostsStarted) {
+            removed.close();
+        }
+        return true;
+    }
+
+    public Collection<VirtualHost> getVirtualHosts() {
+        return Collections.unmodifiableCollection(virtualHosts.values());
+    }
+
+    // Host default diikuti semua virtual host, misalnya untuk menjumlahkan metrik
+    public List<VirtualHost> getAllHosts() {
+        List<VirtualHost> hosts = new ArrayList<>(virtualHosts.size() + 1);
+        hosts.add(defaultHost);
+        hosts.addAll(virtualHosts.values());
+        return hosts;
+    }
+
+    public VirtualHost getDefaultHost() {
+        return defaultHost;
+    }
+
+    // Memilih situs untuk nilai header Host (atau authority dari target absolute-form)
+    public VirtualHost resolveHost(String host) {
+        if (host == null || virtualHosts.isEmpty()) {
+            return defaultHost;
+        }
+        return virtualHosts.getOrDefault(VirtualHost.normalizeName(host), defaultHost);
+    }
+
     public boolean isAlive() {
         return running.get();
     }
 
     public void setLogsPath(String logsPath) {
-        this.logsPath = logsPath;
+        defaultHost.setLogsPath(logsPath);
+    }
+
+    public String getLogsPath() {
+        return defaultHost.getLogsPath();
+    }
+
+    public ServerEngine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(ServerEngine engine) {
+        this.engine = engine;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public void setEventLoopThreads(int eventLoopThreads) {
+        this.eventLoopThreads = eventLoopThreads;
+    }
+
+    public int getAcceptorThreads() {
+        return acceptorThreads;
+    }
+
+    public void setAcceptorThreads(int acceptorThreads) {
+        this.acceptorThreads = acceptorThreads;
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    public int getMaxWorkerThreads() {
+        return maxWorkerThreads;
+    }
+
+    public void setMaxWorkerThreads(int maxWorkerThreads) {
+        this.maxWorkerThreads = maxWorkerThreads;
+    }
+
+    public int getWorkerQueueCapacity() {
+        return workerQueueCapacity;
+    }
+
+    public void setWorkerQueueCapacity(int workerQueueCapacity) {
+        this.workerQueueCapacity = workerQueueCapacity;
+    }
+
+    public StaticFileCache getFileCache() {
+        return defaultHost.getFileCache();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
+    }
+
+    public DirectoryListingCache getListingCache() {
+        return defaultHost.getListingCache();
+    }
+
+    public void setListingCacheMaxBytes(long listingCacheMaxBytes) {
+        defaultHost.setListingCacheMaxBytes(listingCacheMaxBytes);
+    }
+
+    public long getCacheMaxBytes() {
+        return defaultHost.getCacheMaxBytes();
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        defaultHost.setCacheMaxBytes(cacheMaxBytes);
+    }
+
+    public long getCacheMaxFileSize() {
+        return defaultHost.getCacheMaxFileSize();
+    }
+
+    public void setCacheMaxFileSize(long cacheMaxFileSize) {
+        defaultHost.setCacheMaxFileSize(cacheMaxFileSize);
+    }
+
+    // Nilai Cache-Control untuk ekstensi file (tanpa titik, huruf kecil)
+    public String getCacheControl(String extension) {
+        return cacheControlByExtension.getOrDefault(extension, defaultCacheControl);
+    }
+
+    public void setCacheControl(String extension, String cacheControl) {
+        cacheControlByExtension.put(extension.toLowerCase(), cacheControl);
+    }
+
+    public void setDefaultCacheControl(String defaultCacheControl) {
+        this.defaultCacheControl = defaultCacheControl;
+    }
+
+    public AccessLogWriter getAccessLog() {
+        return defaultHost.getAccessLog();
+    }
+
+    public void setLogQueueCapacity(int logQueueCapacity) {
+        this.logQueueCapacity = logQueueCapacity;
+    }
+
+    public void setLogOverflowPolicy(AccessLogWriter.OverflowPolicy logOverflowPolicy) {
+        this.logOverflowPolicy = logOverflowPolicy;
+    }
+
+    public long getZeroCopyThreshold() {
+        return zeroCopyThreshold;
+    }
+
+    public void setZeroCopyThreshold(long zeroCopyThreshold) {
+        this.zeroCopyThreshold = zeroCopyThreshold;
+    }
+
+    public int getMaxRequestLineLength() {
+        return maxRequestLineLength;
+    }
+
+    public void setMaxRequestLineLength(int maxRequestLineLength) {
+        this.maxRequestLineLength = maxRequestLineLength;
+    }
+
+    public int getMaxHeaderBytes() {
+        return maxHeaderBytes;
+    }
+
+    public void setMaxHeaderBytes(int maxHeaderBytes) {
+        this.maxHeaderBytes = maxHeaderBytes;
+    }
+
+    public boolean isHttp2Enabled() {
+        return http2Enabled;
+    }
+
+    public void setHttp2Enabled(boolean http2Enabled) {
+        this.http2Enabled = http2Enabled;
+    }
+
+    public long getMappedMaxBytes() {
+        return mappedMaxBytes;
+    }
+
+    public void setMappedMaxBytes(long mappedMaxBytes) {
+        this.mappedMaxBytes = mappedMaxBytes;
+    }
+
+    public long getMappedMaxFileSize() {
+        return mappedMaxFileSize;
+    }
+
+    public void setMappedMaxFileSize(long mappedMaxFileSize) {
+        this.mappedMaxFileSize = mappedMaxFileSize;
+    }
+
+    public int getMappedIdleTimeout() {
+        return mappedIdleTimeout;
+    }
+
+    public void setMappedIdleTimeout(int mappedIdleTimeout) {
+        this.mappedIdleTimeout = mappedIdleTimeout;
+    }
+
+    public int getMappedMinRequests() {
+        return mappedMinRequests;
+    }
+
+    public void setMappedMinRequests(int mappedMinRequests) {
+        this.mappedMinRequests = mappedMinRequests;
+    }
+
+    // Pool mapping file yang dipakai bersama semua virtual host, null sebelum server dijalankan
+    public MappedFilePool getMappedFiles() {
+        return mappedFiles;
+    }
+
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    public WriteTimeoutWatchdog getWriteWatchdog() {
+        return writeWatchdog;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerIp() {
+        return maxConnectionsPerIp;
+    }
+
+    public void setMaxConnectionsPerIp(int maxConnectionsPerIp) {
+        this.maxConnectionsPerIp = maxConnectionsPerIp;
+    }
+
+    public double getRequestRateLimit() {
+        return requestRateLimit;
+    }
+
+    public void setRequestRateLimit(double requestRateLimit) {
+        this.requestRateLimit = requestRateLimit;
+    }
+
+    public int getRequestBurst() {
+        return requestBurst;
+    }
+
+    public void setRequestBurst(int requestBurst) {
+        this.requestBurst = requestBurst;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(int writeTimeout) {
+        this.writeTimeout = writeTimeout;
+    }
+
+    public int getKeepAliveTimeout() {
+        return keepAliveTimeout;
+    }
+
+    public void setKeepAliveTimeout(int keepAliveTimeout) {
+        this.keepAliveTimeout = keepAliveTimeout;
+    }
+
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
     }
 
-    public List<String> loadAccessLogs() {
-        return new HttpRequestHandler(null, logsPath, this).loadAccessLogs();
+    public void setMaxKeepAliveRequests(int maxKeepAliveRequests) {
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
     }
 
-    public static String getWebRoot() {
-        return webRoot;
+    public String getWebRoot() {
+        return defaultHost.getWebRoot();
     }
 }
\ No newline at end of file
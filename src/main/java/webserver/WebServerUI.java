@@ -7,21 +7,28 @@ import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.prefs.Preferences;
 import javafx.application.Platform;
 
@@ -30,12 +37,21 @@ public class WebServerUI extends Application {
     private TextField filePathField;
     private TextField logsPathField;
     private TextField portField;
+    private ComboBox<ServerEngine> engineBox;
+    private ComboBox<ExecutionMode> executionModeBox;
     private TextArea logArea;
+    private TextField queryFromField;
+    private TextField queryToField;
+    private TextField queryFilterField;
+    private Label metricsLabel;
+    private long lastRequestCount; // untuk menghitung request per detik di panel metrik
     private final Preferences preferences = Preferences.userNodeForPackage(WebServerUI.class);
     private Button startButton;
     private Button stopButton;
     private Timeline logUpdater;
-    private Set<String> displayedLogs = new HashSet<>();
+    private LogTailer logTailer;
+    private static final int MAX_LOG_LINES = 1000; // jumlah baris yang ditahan di area log
+    private final ArrayDeque<Integer> logLineLengths = new ArrayDeque<>(); // panjang tiap baris di area log
 
     public static void main(String[] args) {
         launch(args);
@@ -84,6 +100,20 @@ public class WebServerUI extends Application {
         portField.setPrefWidth(200);
         grid.addRow(2, portLabel, portField);
 
+        Label engineLabel = new Label("Engine :");
+        engineBox = new ComboBox<>();
+        engineBox.getItems().addAll(ServerEngine.values());
+        engineBox.setValue(ServerEngine.valueOf(preferences.get("engine", ServerEngine.BLOCKING.name())));
+        engineBox.setPrefWidth(200);
+        grid.addRow(3, engineLabel, engineBox);
+
+        Label executionModeLabel = new Label("Threads :");
+        executionModeBox = new ComboBox<>();
+        executionModeBox.getItems().addAll(ExecutionMode.values());
+        executionModeBox.setValue(ExecutionMode.valueOf(preferences.get("executionMode", ExecutionMode.CACHED.name())));
+        executionModeBox.setPrefWidth(200);
+        grid.addRow(4, executionModeLabel, executionModeBox);
+
         controlPanel.getChildren().add(grid);
 
         startButton = new Button("Start");
@@ -104,16 +134,35 @@ public class WebServerUI extends Application {
 
         logArea = new TextArea();
         logArea.setEditable(false);
-        logArea.setPrefHeight(300);
+        logArea.setPrefHeight(190);
         logArea.setStyle("-fx-font-family: 'Courier New'; -fx-font-size: 12px; -fx-background-color: #e3f2fd; -fx-text-fill: #01579b;");
         logArea.setWrapText(true);
 
-        VBox logBox = new VBox(10, new Label("Server Logs :"), logArea);
+        // Query log biner per rentang waktu; hasilnya ditampilkan di area log yang sama
+        queryFromField = new TextField();
+        queryFromField.setPromptText("from yyyy-MM-dd HH:mm");
+        queryToField = new TextField();
+        queryToField.setPromptText("to (default now)");
+        queryFilterField = new TextField();
+        queryFilterField.setPromptText("status=5xx ip=... path=/...");
+        Button queryButton = new Button("Query");
+        queryButton.setOnAction(e -> queryLogs());
+        HBox queryBox = new HBox(5, queryFromField, queryToField, queryFilterField, queryButton);
+        HBox.setHgrow(queryFilterField, Priority.ALWAYS);
+
+        VBox logBox = new VBox(10, new Label("Server Logs :"), logArea, queryBox);
         logBox.setPadding(new Insets(10));
         logBox.setStyle("-fx-background-color: #ffffff; -fx-border-color: #81d4fa; -fx-border-width: 1px; -fx-border-radius: 5px; -fx-background-radius: 5px;");
         logBox.setPrefHeight(200);
 
-        VBox mainBox = new VBox(10, logBox);
+        // Panel ringkasan metrik di bawah area log, diperbarui bersama log
+        metricsLabel = new Label("Server not running");
+        metricsLabel.setStyle("-fx-font-family: 'Courier New'; -fx-font-size: 12px; -fx-text-fill: #01579b;");
+        VBox metricsBox = new VBox(5, new Label("Metrics :"), metricsLabel);
+        metricsBox.setPadding(new Insets(10));
+        metricsBox.setStyle("-fx-background-color: #ffffff; -fx-border-color: #81d4fa; -fx-border-width: 1px; -fx-border-radius: 5px; -fx-background-radius: 5px;");
+
+        VBox mainBox = new VBox(10, logBox, metricsBox);
         mainBox.setPadding(new Insets(10));
         mainBox.setAlignment(Pos.TOP_CENTER);
 
@@ -153,6 +202,8 @@ public class WebServerUI extends Application {
         preferences.put("filePath", filePath);
         preferences.put("logsPath", logsPath);
         preferences.put("port", String.valueOf(port));
+        preferences.put("engine", engineBox.getValue().name());
+        preferences.put("executionMode", executionModeBox.getValue().name());
 
         if (webServer == null || !webServer.isAlive()) {
             if (!logArea.getText().isEmpty()) {
@@ -160,6 +211,8 @@ public class WebServerUI extends Application {
             }
 
             webServer = new WebServer(filePath, logsPath, port);
+            webServer.setEngine(engineBox.getValue());
+            webServer.setExecutionMode(executionModeBox.getValue());
             new Thread(() -> webServer.start()).start();
             appendToLog(String.format("[%s] Server started on port %d\n", new Date(), port));
             startButton.setDisable(true);
@@ -185,7 +238,12 @@ public class WebServerUI extends Application {
     }
 
     private void startLogUpdater() {
-        logUpdater = new Timeline(new KeyFrame(Duration.seconds(2), e -> readLogs()));
+        logTailer = new LogTailer(webServer.getLogsPath());
+        lastRequestCount = 0;
+        logUpdater = new Timeline(new KeyFrame(Duration.seconds(2), e -> {
+            readLogs();
+            updateMetrics();
+        }));
         logUpdater.setCycleCount(Timeline.INDEFINITE);
         logUpdater.play();
     }
@@ -196,21 +254,89 @@ public class WebServerUI extends Application {
         }
     }
 
-    private void readLogs() {
+    // Memperbarui panel metrik; laju request dihitung dari selisih sejak pembaruan sebelumnya (2 detik)
+    private void updateMetrics() {
         if (webServer != null) {
-            List<String> logs = webServer.loadAccessLogs();
+            ServerMetrics metrics = webServer.getMetrics();
+            long requests = metrics.getTotalRequests();
+            double rate = (requests - lastRequestCount) / 2.0;
+            lastRequestCount = requests;
+            metricsLabel.setText(String.format("Rate : %.1f req/s%n", rate) + metrics.summary());
+        }
+    }
+
+    // Hanya baris yang baru ditulis sejak polling sebelumnya yang dibaca dari file log
+    private void readLogs() {
+        if (webServer != null && logTailer != null) {
+            List<String> logs = logTailer.poll();
             if (!logs.isEmpty()) {
+                StringBuilder text = new StringBuilder();
                 for (String log : logs) {
-                    if (!displayedLogs.contains(log)) {
-                        appendToLog(log + "\n");
-                        displayedLogs.add(log);
-                    }
+                    text.append(log).append('\n');
                 }
+                appendToLog(text.toString());
             }
         }
     }
 
+    // Mencari di log biner tanpa memuat seluruh file; paling banyak MAX_LOG_LINES record ditampilkan
+    private void queryLogs() {
+        String logsPath = webServer != null ? webServer.getLogsPath() : logsPathField.getText();
+        long from;
+        long to;
+        Predicate<AccessLogRecord> filter;
+        try {
+            from = queryFromField.getText().isBlank()
+                    ? LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : AccessLogStore.parseTime(queryFromField.getText());
+            to = queryToField.getText().isBlank()
+                    ? System.currentTimeMillis() + 1 : AccessLogStore.parseTime(queryToField.getText());
+            filter = AccessLogStore.parseFilter(queryFilterField.getText());
+        } catch (IllegalArgumentException e) {
+            appendToLog("Query error: " + e.getMessage() + "\n");
+            return;
+        }
+        // Dibaca di thread sendiri agar UI tidak macet saat segmennya besar
+        Thread thread = new Thread(() -> {
+            StringBuilder text = new StringBuilder();
+            int count = 0;
+            try (Stream<AccessLogRecord> records = new AccessLogStore(logsPath).query(from, to, filter)) {
+                for (AccessLogRecord record : (Iterable<AccessLogRecord>) records.limit(MAX_LOG_LINES)::iterator) {
+                    text.append(record).append('\n');
+                    count++;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                appendToLog("Query error: " + e.getMessage() + "\n");
+                return;
+            }
+            appendToLog(String.format("--- %d record(s) from %s to %s%s ---%n", count, new Date(from), new Date(to),
+                    count == MAX_LOG_LINES ? " (first " + MAX_LOG_LINES + ")" : "") + text);
+        }, "access-log-query");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Menambah teks ke area log dan membuang baris paling lama agar ukurannya tetap
     private void appendToLog(String message) {
-        Platform.runLater(() -> logArea.appendText(message));
+        Platform.runLater(() -> {
+            logArea.appendText(message);
+            int start = 0;
+            for (int i = 0; i < message.length(); i++) {
+                if (message.charAt(i) == '\n') {
+                    logLineLengths.add(i + 1 - start);
+                    start = i + 1;
+                }
+            }
+            if (start < message.length()) {
+                logLineLengths.add(message.length() - start);
+            }
+            int removed = 0;
+            while (logLineLengths.size() > MAX_LOG_LINES) {
+                removed += logLineLengths.poll();
+            }
+            if (removed > 0) {
+                logArea.deleteText(0, removed);
+            }
+        });
     }
 }
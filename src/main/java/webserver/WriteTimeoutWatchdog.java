@@ -0,0 +1,134 @@
+package webserver;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Batas waktu tulis untuk socket blocking. Java tidak punya SO_TIMEOUT untuk write, jadi setiap tulis ke socket
+// ditandai waktu mulainya dan satu thread pengawas menutup socket yang tulisnya macet melewati batas.
+public class WriteTimeoutWatchdog {
+    private final long timeoutNanos;
+    private final AdmissionController admission;
+    private final Set<Guard> guards = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+    private Thread thread;
+
+    public WriteTimeoutWatchdog(int timeoutMillis, AdmissionController admission) {
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.admission = admission;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::watchLoop, "write-timeout-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void close() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // Mulai mengawasi tulis ke socket ini; guard harus dilepas dengan Guard.close saat koneksi selesai
+    public Guard register(Socket socket) {
+        Guard guard = new Guard(socket);
+        guards.add(guard);
+        return guard;
+    }
+
+    private void watchLoop() {
+        long interval = Math.max(50, Math.min(1000, TimeUnit.NANOSECONDS.toMillis(timeoutNanos) / 4));
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (Guard guard : guards) {
+                long started = guard.writeStarted;
+                if (started != 0 && now - started > timeoutNanos) {
+                    // Menutup socket membuat write yang sedang menunggu langsung gagal
+                    admission.record(AdmissionController.Rejection.WRITE_TIMEOUT);
+                    guard.timedOut = true;
+                    guard.close();
+                    try {
+                        guard.socket.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    // Penanda tulis untuk satu koneksi
+    public final class Guard {
+        private final Socket socket;
+        private volatile long writeStarted; // 0 jika sedang tidak menulis
+        private volatile boolean timedOut;
+
+        private Guard(Socket socket) {
+            this.socket = socket;
+        }
+
+        public void begin() {
+            long now = System.nanoTime();
+            writeStarted = now != 0 ? now : 1;
+        }
+
+        public void end() {
+            writeStarted = 0;
+        }
+
+        public void close() {
+            guards.remove(this);
+        }
+
+        // Apakah socket-nya ditutup oleh pengawas karena tulisnya macet
+        public boolean isTimedOut() {
+            return timedOut;
+        }
+
+        // Membungkus output socket supaya setiap write dan flush ikut diawasi
+        public OutputStream wrap(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    begin();
+                    try {
+                        out.write(b);
+                    } finally {
+                        end();
+                    }
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    begin();
+                    try {
+                        out.write(b, off, len);
+                    } finally {
+                        end();
+                    }
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    begin();
+                    try {
+                        out.flush();
+                    } finally {
+                        end();
+                    }
+                }
+            };
+        }
+    }
+}